@@ -0,0 +1,139 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)ConnectionContextBenchmark.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.IOException;
+
+import java.net.Socket;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ * Carries a ConnectionContext on each of many virtual threads,
+ * all parked at once as idle connections are, with either the
+ * server's ScopedValue or a ThreadLocal. A ThreadLocal gives
+ * every thread its own map; run with -prof gc to compare the
+ * allocation per connection alongside the time.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(value = 2, jvmArgsAppend = "--enable-preview")
+public class ConnectionContextBenchmark {
+    private static final ThreadLocal<ConnectionContext> LOCAL = new ThreadLocal<>();
+
+    public enum Carrier {
+        SCOPED_VALUE,
+        THREAD_LOCAL
+    }
+
+    @Param({"SCOPED_VALUE", "THREAD_LOCAL"})
+    public Carrier carrier;
+
+    @Param({"10000", "100000"})
+    public int connections;
+
+    @Param({"16"})
+    public int reads;   // Lookups per connection, as for the log lines of a short session
+
+    private Socket socket;
+
+    @Setup
+    public void setUp() {
+        this.socket = new Socket();     // Never connected; the contexts only hold it
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.socket.close();
+    }
+
+    @Benchmark
+    public void connections(final Blackhole blackhole) {
+        final var parked = new CountDownLatch(1);
+
+        try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var i = 0; i < this.connections; i++) {
+                final var context = new ConnectionContext(this.socket);
+
+                switch (this.carrier) {
+                    case SCOPED_VALUE -> executor.submit(() -> ScopedValue.runWhere(ConnectionContext.CURRENT, context, () -> this.serve(parked, blackhole)));
+                    case THREAD_LOCAL -> executor.submit(() -> {
+                        LOCAL.set(context);
+
+                        try {
+                            this.serve(parked, blackhole);
+                        } finally {
+                            LOCAL.remove();
+                        }
+                    });
+                }
+            }
+
+            parked.countDown();     // Every connection's context is live until now
+        }
+    }
+
+    private void serve(final CountDownLatch parked, final Blackhole blackhole) {
+        try {
+            parked.await();
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt(); // Restore the interrupt status
+
+            return;
+        }
+
+        for (var i = 0; i < this.reads; i++) {
+            final var context = this.carrier == Carrier.SCOPED_VALUE ? ConnectionContext.CURRENT.get() : LOCAL.get();
+
+            blackhole.consume(context.getId());
+        }
+    }
+}
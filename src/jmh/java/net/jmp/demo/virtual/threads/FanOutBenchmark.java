@@ -0,0 +1,83 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)FanOutBenchmark.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+// The Tasks scenario: fan out 10,000 tasks and wait for all of them as the executor closes
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(value = 2, jvmArgsAppend = "--enable-preview")
+public class FanOutBenchmark {
+    @Param({"VIRTUAL", "PLATFORM", "FIXED", "FORK_JOIN"})
+    public ThreadKind kind;
+
+    @Param({"10000"})
+    public int tasks;
+
+    @Param({"0", "1"})
+    public long sleepMillis;    // Zero measures scheduling alone; one adds a blocking park per task
+
+    @Benchmark
+    public void fanOut(final Blackhole blackhole) {
+        try (final var executor = this.kind.newExecutor()) {
+            for (var i = 0; i < this.tasks; i++) {
+                final var task = i;
+
+                executor.submit(() -> {
+                    if (this.sleepMillis > 0)
+                        Thread.sleep(this.sleepMillis);
+
+                    blackhole.consume(task);
+
+                    return null;
+                });
+            }
+        }  // executor.close() waits for the tasks to complete
+    }
+}
@@ -0,0 +1,110 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)FramingBenchmark.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+// What the server pays to decode one message: a text line through readLine() versus a frame in place
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 2, jvmArgsAppend = "--enable-preview")
+public class FramingBenchmark {
+    private static final int MESSAGES = 10_000;
+
+    private byte[] lines;
+    private byte[] frames;
+
+    @Setup
+    public void setUp() throws IOException {
+        final var text = new StringBuilder();
+
+        for (var i = 0; i < MESSAGES; i++)
+            text.append(Client.word(i)).append('\n');
+
+        this.lines = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        final var binary = new ByteArrayOutputStream();
+        final var encoder = new FrameCodec.Encoder(binary);
+
+        for (var i = 0; i < MESSAGES; i++)
+            encoder.write(FrameCodec.DATA, FrameCodec.bytes(Client.word(i)));
+
+        encoder.flush();
+
+        this.frames = binary.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void text(final Blackhole blackhole) throws IOException {
+        final var in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(this.lines), StandardCharsets.UTF_8));
+
+        String line;
+
+        while ((line = in.readLine()) != null)
+            blackhole.consume(line.equals(Server.ECHO_COMMAND));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void binary(final Blackhole blackhole) throws IOException {
+        final var decoder = new FrameCodec.Decoder(new ByteArrayInputStream(this.frames));
+
+        while (decoder.next())
+            blackhole.consume(decoder.is(FrameCodec.COMMAND, FrameCodec.ECHO));
+    }
+}
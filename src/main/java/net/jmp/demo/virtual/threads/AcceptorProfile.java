@@ -0,0 +1,93 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)AcceptorProfile.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.Positive;
+
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Where and with how many threads a server accepts.
+ * Each port gets its own listening socket and acceptor.
+ * With SO_REUSEPORT, a port gets several sockets bound
+ * to it and the kernel spreads incoming connections
+ * across their acceptors; without it, extra acceptors on
+ * one socket would only queue on its accept lock, so
+ * acceptors other than one are rejected.
+ */
+record AcceptorProfile(List<Integer> ports, int acceptorsPerPort, boolean reusePort) {
+    static final String PREFIX = "net.jmp.demo.virtual.threads.server.";
+
+    AcceptorProfile {
+        if (ports == null || ports.isEmpty())
+            throw new IllegalArgumentException("At least one port is required");
+
+        for (final var port : ports) {
+            if (port < 1 || port > 65_535)
+                throw new IllegalArgumentException("Ports must be between 1 and 65535: " + port);
+        }
+
+        if (acceptorsPerPort < 1)
+            throw new IllegalArgumentException("Acceptors per port must be positive: " + acceptorsPerPort);
+
+        if (acceptorsPerPort > 1 && !reusePort)
+            throw new IllegalArgumentException("More than one acceptor per port needs SO_REUSEPORT");
+
+        ports = List.copyOf(ports);
+    }
+
+    static AcceptorProfile single(final @Positive int port) {
+        return new AcceptorProfile(List.of(port), 1, false);
+    }
+
+    // The ports property replaces the given port when it is set
+
+    static AcceptorProfile fromSystemProperties(final @Positive int port) {
+        final var ports = System.getProperty(PREFIX + "ports");
+
+        return new AcceptorProfile(
+                ports == null || ports.isBlank()
+                        ? List.of(port)
+                        : Arrays.stream(ports.split(",")).map(String::trim).map(Integer::valueOf).toList(),
+                Integer.getInteger(PREFIX + "acceptors", 1),
+                Boolean.getBoolean(PREFIX + "reusePort")
+        );
+    }
+
+    int firstPort() {
+        return this.ports.getFirst();
+    }
+
+    int listeners() {
+        return this.ports.size() * this.acceptorsPerPort;
+    }
+}
@@ -0,0 +1,154 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)AdmissionControl.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+
+import java.time.Duration;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Decides whether an accepted connection is served. Up
+ * to maxConnections are served at once; beyond that a
+ * connection waits in a queue of at most maxQueued for
+ * up to queueTimeout, and is rejected straight away when
+ * the queue is full. The waiting is done by the
+ * connection's own virtual thread, so the accept loop
+ * never stalls and the sockets held open are bounded by
+ * the sum of the two limits.
+ */
+final class AdmissionControl {
+    static final String PREFIX = "net.jmp.demo.virtual.threads.server.";
+    static final int DEFAULT_MAX_CONNECTIONS = 10_000;
+    static final int DEFAULT_MAX_QUEUED = 1_000;
+    static final long DEFAULT_QUEUE_TIMEOUT_MILLIS = 1_000;
+
+    private final int maxConnections;
+    private final int maxQueued;
+    private final Duration queueTimeout;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    AdmissionControl(final @Positive int maxConnections,
+                     final @PositiveOrZero int maxQueued,
+                     final @NotNull Duration queueTimeout) {
+        super();
+
+        assert maxConnections > 0;
+        assert maxQueued >= 0;
+        assert queueTimeout != null && !queueTimeout.isNegative();
+
+        this.maxConnections = maxConnections;
+        this.maxQueued = maxQueued;
+        this.queueTimeout = queueTimeout;
+        this.permits = new Semaphore(maxConnections);
+    }
+
+    static AdmissionControl fromSystemProperties() {
+        return new AdmissionControl(
+                Integer.getInteger(PREFIX + "maxConnections", DEFAULT_MAX_CONNECTIONS),
+                Integer.getInteger(PREFIX + "maxQueued", DEFAULT_MAX_QUEUED),
+                Duration.ofMillis(Long.getLong(PREFIX + "queueTimeoutMillis", DEFAULT_QUEUE_TIMEOUT_MILLIS))
+        );
+    }
+
+    // True when the caller holds a permit and must release() it
+
+    boolean admit() throws InterruptedException {
+        if (this.permits.tryAcquire()) {
+            this.admitted.increment();
+
+            return true;
+        }
+
+        if (this.queued.incrementAndGet() > this.maxQueued) {
+            this.queued.decrementAndGet();
+            this.rejected.increment();
+
+            return false;
+        }
+
+        try {
+            if (this.permits.tryAcquire(this.queueTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                this.admitted.increment();
+
+                return true;
+            }
+
+            this.rejected.increment();
+
+            return false;
+        } finally {
+            this.queued.decrementAndGet();
+        }
+    }
+
+    void release() {
+        this.permits.release();
+    }
+
+    int getMaxConnections() {
+        return this.maxConnections;
+    }
+
+    int getMaxQueued() {
+        return this.maxQueued;
+    }
+
+    Duration getQueueTimeout() {
+        return this.queueTimeout;
+    }
+
+    int getAvailablePermits() {
+        return this.permits.availablePermits();
+    }
+
+    int getQueued() {
+        return this.queued.get();
+    }
+
+    long getAdmitted() {
+        return this.admitted.sum();
+    }
+
+    long getRejected() {
+        return this.rejected.sum();
+    }
+}
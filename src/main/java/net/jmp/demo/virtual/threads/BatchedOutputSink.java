@@ -0,0 +1,260 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)BatchedOutputSink.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.WritableByteChannel;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.LoggerFactory;
+
+import org.slf4j.ext.XLogger;
+
+final class BatchedOutputSink implements AutoCloseable {
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1_024;
+
+    private static final int MAX_NUMBER_LENGTH = 20;   // Long.MIN_VALUE
+    private static final int SEALED_CHUNKS_PER_STRIPE = 2;
+    private static final Chunk END_OF_OUTPUT = new Chunk(0);
+
+    private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
+    private final WritableByteChannel channel;
+    private final int chunkSize;
+    private final AtomicReferenceArray<Chunk> stripes;
+    private final BlockingQueue<Chunk> sealed;
+    private final Thread writer;
+
+    private volatile IOException failure;
+
+    private long bytesWritten;
+    private long writes;
+
+    BatchedOutputSink() {
+        this(new FileOutputStream(FileDescriptor.out).getChannel(), DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    BatchedOutputSink(final @NotNull WritableByteChannel channel, final @Positive int chunkSize, final @Positive int stripes) {
+        super();
+
+        assert channel != null;
+        assert chunkSize > MAX_NUMBER_LENGTH;
+        assert stripes > 0;
+
+        this.channel = channel;
+        this.chunkSize = chunkSize;
+        this.stripes = new AtomicReferenceArray<>(stripes);
+        this.sealed = new ArrayBlockingQueue<>(stripes * SEALED_CHUNKS_PER_STRIPE);
+
+        for (var i = 0; i < stripes; i++)
+            this.stripes.set(i, new Chunk(chunkSize));
+
+        this.writer = Thread.ofPlatform().name("output-sink-writer").daemon().start(this::drain);
+    }
+
+    // Appends the decimal digits of the value followed by the separator without taking a lock or allocating
+
+    void append(final long value, final char separator) {
+        assert separator < 0x80;
+
+        final var length = digits(value) + 1;
+        final var stripe = (int) (Thread.currentThread().threadId() % this.stripes.length());
+
+        while (true) {
+            final var chunk = this.stripes.get(stripe);
+            final var start = chunk.reserved.getAndAdd(length);
+
+            if (start + length <= chunk.data.length) {
+                writeDigits(chunk.data, start, length - 1, value);
+
+                chunk.data[start + length - 1] = (byte) separator;
+                chunk.committed.addAndGet(length);
+
+                return;
+            }
+
+            if (start <= chunk.data.length)
+                this.seal(stripe, chunk, start);    // This reservation was the first not to fit
+            else
+                Thread.onSpinWait();                // Another appender is sealing the chunk
+        }
+    }
+
+    long getBytesWritten() {
+        return this.bytesWritten;
+    }
+
+    long getWrites() {
+        return this.writes;
+    }
+
+    // Must only be called once every appender has finished
+
+    @Override
+    public void close() {
+        this.logger.entry();
+
+        for (var i = 0; i < this.stripes.length(); i++) {
+            final var chunk = this.stripes.get(i);
+
+            this.seal(i, chunk, Math.min(chunk.reserved.get(), chunk.data.length));
+        }
+
+        this.enqueue(END_OF_OUTPUT);
+
+        try {
+            this.writer.join();
+        } catch (final InterruptedException ie) {
+            this.logger.catching(ie);
+
+            Thread.currentThread().interrupt(); // Restore the interrupt status
+        }
+
+        if (this.failure != null)
+            throw new UncheckedIOException("Unable to write the batched output", this.failure);
+
+        this.logger.exit();
+    }
+
+    private void seal(final int stripe, final @NotNull Chunk chunk, final int limit) {
+        chunk.limit = limit;
+
+        this.stripes.set(stripe, new Chunk(this.chunkSize));
+        this.enqueue(chunk);
+    }
+
+    // The queue is bounded, so an appender that seals a chunk while the writer is behind waits for room;
+    // no more than two chunks per stripe are ever waiting to be written
+
+    private void enqueue(final @NotNull Chunk chunk) {
+        var interrupted = false;
+
+        while (true) {
+            try {
+                this.sealed.put(chunk);
+
+                break;
+            } catch (final InterruptedException ie) {
+                interrupted = true;     // Dropping the chunk would lose output
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt(); // Restore the interrupt status
+    }
+
+    // After a failed write the remaining chunks are still taken, and discarded, so appenders never wait forever
+
+    private void drain() {
+        try {
+            Chunk chunk;
+
+            while ((chunk = this.sealed.take()) != END_OF_OUTPUT) {
+                while (chunk.committed.get() < chunk.limit)
+                    Thread.onSpinWait();    // An appender is still copying its digits
+
+                final var buffer = ByteBuffer.wrap(chunk.data, 0, chunk.limit);
+
+                try {
+                    while (buffer.hasRemaining() && this.failure == null) {
+                        this.bytesWritten += this.channel.write(buffer);
+                        this.writes++;
+                    }
+                } catch (final IOException ioe) {
+                    this.failure = ioe;
+                }
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt(); // Restore the interrupt status
+        }
+    }
+
+    private static int digits(final long value) {
+        if (value == Long.MIN_VALUE)
+            return MAX_NUMBER_LENGTH;
+
+        var remaining = Math.abs(value);
+        var count = value < 0 ? 2 : 1;
+
+        while (remaining >= 10) {
+            remaining /= 10;
+            count++;
+        }
+
+        return count;
+    }
+
+    private static void writeDigits(final byte @NotNull [] data, final int start, final int length, final long value) {
+        if (value == Long.MIN_VALUE) {
+            final var text = Long.toString(value);
+
+            for (var i = 0; i < length; i++)
+                data[start + i] = (byte) text.charAt(i);
+
+            return;
+        }
+
+        var remaining = Math.abs(value);
+
+        for (var i = start + length - 1; i >= start; i--) {
+            data[i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+
+        if (value < 0)
+            data[start] = '-';
+    }
+
+    private static final class Chunk {
+        private final byte[] data;
+        private final AtomicInteger reserved = new AtomicInteger();
+        private final AtomicInteger committed = new AtomicInteger();
+
+        private volatile int limit;
+
+        private Chunk(final int size) {
+            this.data = new byte[size];
+        }
+    }
+}
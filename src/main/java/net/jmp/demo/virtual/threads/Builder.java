@@ -1,10 +1,11 @@
 package net.jmp.demo.virtual.threads;
 
 /*
+ * (#)Builder.java  0.5.0   10/18/2026
  * (#)Builder.java  0.3.0   03/22/2024
  *
  * @author    Jonathan Parker
- * @version   0.3.0
+ * @version   0.5.0
  * @since     0.3.0
  *
  * MIT License
@@ -30,15 +31,26 @@ package net.jmp.demo.virtual.threads;
  * SOFTWARE.
  */
 
+import jakarta.validation.constraints.NotNull;
+
 import org.slf4j.LoggerFactory;
 
 import org.slf4j.ext.XLogger;
 
 final class Builder implements Runnable {
     private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
+    private final ThreadKind threadKind;
 
     Builder() {
+        this(ThreadKind.fromSystemProperty());
+    }
+
+    Builder(final @NotNull ThreadKind threadKind) {
         super();
+
+        assert threadKind != null;
+
+        this.threadKind = threadKind;
     }
 
     @Override
@@ -54,7 +66,7 @@ final class Builder implements Runnable {
     private void builderOneThread() {
         this.logger.entry();
 
-        final Thread.Builder builder = Thread.ofVirtual().name("My-Thread");
+        final Thread.Builder builder = this.threadKind.newBuilder().name("My-Thread");
 
         final Runnable task = () -> {
             this.logger.info("Running thread");
@@ -79,7 +91,7 @@ final class Builder implements Runnable {
     private void builderTwoThreads() {
         this.logger.entry();
 
-        final Thread.Builder builder = Thread.ofVirtual().name("worker-", 0);
+        final Thread.Builder builder = this.threadKind.newBuilder("worker-");
 
         final Runnable task = () -> {
             if (this.logger.isInfoEnabled())
@@ -0,0 +1,346 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)CarrierMatrix.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import java.lang.management.ManagementFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.time.Duration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.LoggerFactory;
+
+import org.slf4j.ext.XLogger;
+
+/*
+ * Re-runs the tasks and server workloads in forked JVMs
+ * across a matrix of virtual thread scheduler settings.
+ * The carrier pool is sized once per JVM, so each cell
+ * needs its own process; the child runs Main with the
+ * cell properties set and hands its result back through
+ * a properties file.
+ */
+final class CarrierMatrix implements Runnable {
+    static final String PROPERTY = "net.jmp.demo.virtual.threads.carriers";
+    static final String PREFIX = PROPERTY + ".";
+    static final String WORKLOAD_PROPERTY = PREFIX + "workload";
+    static final String RESULT_PROPERTY = PREFIX + "result";
+
+    private static final String PARALLELISM_PROPERTY = "jdk.virtualThreadScheduler.parallelism";
+    private static final String MAX_POOL_SIZE_PROPERTY = "jdk.virtualThreadScheduler.maxPoolSize";
+    private static final String DEFAULT_LOAD_CLIENTS = "1000";
+    private static final long DEFAULT_TIMEOUT_SECONDS = 600;
+
+    enum Workload {
+        TASKS,
+        SERVER;
+
+        static Workload fromSystemProperty() {
+            return fromString(System.getProperty(WORKLOAD_PROPERTY, TASKS.name()));
+        }
+
+        static Workload fromString(final @NotNull String value) {
+            assert value != null;
+
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
+    private final List<Integer> parallelisms;
+    private final List<Integer> maxPoolSizes;
+    private final List<Workload> workloads;
+    private final Duration timeout;
+    private final List<String> arguments;
+
+    // The arguments are the command-line options each child runs its cell with
+
+    CarrierMatrix(final @NotNull List<String> arguments) {
+        this(integers(System.getProperty(PREFIX + "parallelism"), defaultParallelisms()),
+             integers(System.getProperty(PREFIX + "maxPoolSize"), List.of(0)),
+             workloads(System.getProperty(PREFIX + "workloads", "tasks,server")),
+             Duration.ofSeconds(Long.getLong(PREFIX + "timeoutSeconds", DEFAULT_TIMEOUT_SECONDS)),
+             arguments);
+    }
+
+    // A maximum pool size of zero leaves the scheduler default in place
+
+    CarrierMatrix(final @NotNull List<Integer> parallelisms,
+                  final @NotNull List<Integer> maxPoolSizes,
+                  final @NotNull List<Workload> workloads,
+                  final @NotNull Duration timeout,
+                  final @NotNull List<String> arguments) {
+        super();
+
+        assert parallelisms != null && !parallelisms.isEmpty();
+        assert maxPoolSizes != null && !maxPoolSizes.isEmpty();
+        assert workloads != null && !workloads.isEmpty();
+        assert timeout != null;
+        assert arguments != null;
+
+        this.parallelisms = List.copyOf(parallelisms);
+        this.maxPoolSizes = List.copyOf(maxPoolSizes);
+        this.workloads = List.copyOf(workloads);
+        this.timeout = timeout;
+        this.arguments = List.copyOf(arguments);
+    }
+
+    @Override
+    public void run() {
+        this.logger.entry();
+
+        final List<Cell> cells = new ArrayList<>();
+
+        try {
+            final var directory = Files.createTempDirectory("carriers-");
+
+            this.logger.info("Running {} workload(s) over parallelism {} and maxPoolSize {}; child logs in {}",
+                    this.workloads,
+                    this.parallelisms,
+                    this.maxPoolSizes,
+                    directory);
+
+            for (final var workload : this.workloads) {
+                for (final var parallelism : this.parallelisms) {
+                    for (final var maxPoolSize : this.maxPoolSizes) {
+                        if (maxPoolSize != 0 && maxPoolSize < parallelism) {
+                            this.logger.warn("Skipping parallelism {} with maxPoolSize {}: the pool cannot be smaller than its parallelism",
+                                    parallelism,
+                                    maxPoolSize);
+
+                            continue;
+                        }
+
+                        final var cell = this.runCell(directory, workload, parallelism, maxPoolSize);
+
+                        if (cell != null)
+                            cells.add(cell);
+                    }
+                }
+            }
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
+        } catch (final InterruptedException ie) {
+            this.logger.catching(ie);
+
+            Thread.currentThread().interrupt(); // Restore the interrupt status
+        }
+
+        this.report(cells);
+
+        this.logger.exit();
+    }
+
+    // Called in the child JVM once its workload has completed
+
+    static void writeResult(final @NotNull WorkloadResult result) throws IOException {
+        assert result != null;
+
+        try (final Writer writer = Files.newBufferedWriter(Path.of(System.getProperty(RESULT_PROPERTY)))) {
+            result.toProperties().store(writer, "Carrier matrix cell");
+        }
+    }
+
+    static boolean isCell() {
+        return System.getProperty(RESULT_PROPERTY) != null;
+    }
+
+    private Cell runCell(final @NotNull Path directory,
+                         final @NotNull Workload workload,
+                         final int parallelism,
+                         final int maxPoolSize) throws IOException, InterruptedException {
+        this.logger.entry(directory, workload, parallelism, maxPoolSize);
+
+        assert directory != null;
+        assert workload != null;
+
+        final var name = String.format("%s-p%d-m%d", workload.name().toLowerCase(Locale.ROOT), parallelism, maxPoolSize);
+        final var resultFile = directory.resolve(name + ".properties");
+        final var process = new ProcessBuilder(this.command(workload, parallelism, maxPoolSize, resultFile))
+                .redirectErrorStream(true)
+                .redirectOutput(directory.resolve(name + ".log").toFile())
+                .start();
+
+        Cell cell = null;
+
+        try {
+            if (!process.waitFor(this.timeout.toSeconds(), TimeUnit.SECONDS)) {
+                this.logger.error("Cell {} did not finish within {} s", name, this.timeout.toSeconds());
+            } else if (process.exitValue() != 0 || !Files.exists(resultFile)) {
+                this.logger.error("Cell {} failed with exit value {}", name, process.exitValue());
+            } else {
+                try (final Reader reader = Files.newBufferedReader(resultFile)) {
+                    final var properties = new Properties();
+
+                    properties.load(reader);
+
+                    cell = new Cell(workload, parallelism, maxPoolSize, WorkloadResult.fromProperties(properties));
+                }
+
+                this.logger.info("Cell {}: {} ops/s", name, String.format("%.0f", cell.result.throughput()));
+            }
+        } finally {
+            process.destroyForcibly();
+        }
+
+        this.logger.exit(cell);
+
+        return cell;
+    }
+
+    /*
+     * The child inherits this JVM's options and class
+     * path, minus the matrix switch itself, any scheduler
+     * settings and any debugger agent that would fight
+     * over its port, and runs Main with the parent's
+     * command-line options.
+     */
+    private List<String> command(final @NotNull Workload workload,
+                                 final int parallelism,
+                                 final int maxPoolSize,
+                                 final @NotNull Path resultFile) {
+        final List<String> command = new ArrayList<>();
+
+        command.add(ProcessHandle.current().info().command()
+                .orElse(Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+
+        ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .filter(argument -> !argument.startsWith("-D" + PROPERTY))
+                .filter(argument -> !argument.startsWith("-Djdk.virtualThreadScheduler."))
+                .filter(argument -> !argument.startsWith("-agentlib:jdwp"))
+                .forEach(command::add);
+
+        command.add("-D" + PARALLELISM_PROPERTY + "=" + parallelism);
+
+        if (maxPoolSize != 0)
+            command.add("-D" + MAX_POOL_SIZE_PROPERTY + "=" + maxPoolSize);
+
+        command.add("-D" + WORKLOAD_PROPERTY + "=" + workload.name());
+        command.add("-D" + RESULT_PROPERTY + "=" + resultFile);
+
+        if (workload == Workload.SERVER && System.getProperty(LoadProfile.PREFIX + "clients") == null) {
+            command.add("-D" + LoadProfile.PREFIX + "clients=" + DEFAULT_LOAD_CLIENTS);
+            command.add("-D" + LoadProfile.PREFIX + "echo=true");
+        }
+
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.addAll(this.arguments);
+
+        return command;
+    }
+
+    private void report(final @NotNull List<Cell> cells) {
+        this.logger.entry(cells);
+
+        assert cells != null;
+
+        if (this.logger.isInfoEnabled()) {
+            this.logger.info(String.format("%-8s %11s %11s %12s %10s %10s %10s %8s",
+                    "workload", "parallelism", "maxPoolSize", "ops/s", "p50 us", "p99 us", "max us", "failures"));
+
+            for (final var cell : cells) {
+                this.logger.info(String.format("%-8s %11d %11s %12.0f %10.1f %10.1f %10.1f %8d",
+                        cell.workload.name().toLowerCase(Locale.ROOT),
+                        cell.parallelism,
+                        cell.maxPoolSize == 0 ? "default" : Integer.toString(cell.maxPoolSize),
+                        cell.result.throughput(),
+                        cell.result.p50Nanos() / 1_000.0,
+                        cell.result.p99Nanos() / 1_000.0,
+                        cell.result.maxNanos() / 1_000.0,
+                        cell.result.failures()));
+            }
+
+            for (final var workload : this.workloads) {
+                cells.stream()
+                        .filter(cell -> cell.workload == workload)
+                        .max(Comparator.comparingDouble(cell -> cell.result.throughput()))
+                        .ifPresent(best -> this.logger.info("Best {} throughput at parallelism {}, maxPoolSize {}",
+                                workload,
+                                best.parallelism,
+                                best.maxPoolSize == 0 ? "default" : best.maxPoolSize));
+            }
+        }
+
+        this.logger.exit();
+    }
+
+    // Powers of two below the processor count, then the processor count itself
+
+    private static List<Integer> defaultParallelisms() {
+        final var processors = Runtime.getRuntime().availableProcessors();
+
+        final List<Integer> parallelisms = new ArrayList<>();
+
+        for (var parallelism = 1; parallelism < processors; parallelism *= 2)
+            parallelisms.add(parallelism);
+
+        parallelisms.add(processors);
+
+        return parallelisms;
+    }
+
+    private static List<Integer> integers(final String value, final @NotNull List<Integer> defaults) {
+        if (value == null || value.isBlank())
+            return defaults;
+
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .toList();
+    }
+
+    private static List<Workload> workloads(final @NotNull String value) {
+        return Arrays.stream(value.split(","))
+                .map(Workload::fromString)
+                .toList();
+    }
+
+    private record Cell(Workload workload, int parallelism, int maxPoolSize, WorkloadResult result) {
+    }
+}
@@ -1,10 +1,11 @@
 package net.jmp.demo.virtual.threads;
 
 /*
+ * (#)Client.java   0.5.0   10/18/2026
  * (#)Client.java   0.3.0   03/22/2024
  *
  * @author    Jonathan Parker
- * @version   0.3.0
+ * @version   0.5.0
  * @since     0.3.0
  *
  * MIT License
@@ -30,47 +31,126 @@ package net.jmp.demo.virtual.threads;
  * SOFTWARE.
  */
 
+import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 
 import java.net.Socket;
 
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
 import java.util.List;
+
 import java.util.concurrent.Callable;
 
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import java.util.function.IntFunction;
+
 import org.slf4j.LoggerFactory;
 
 import org.slf4j.ext.XLogger;
 
 final class Client implements Callable<Void> {
+    static final int DEFAULT_BATCH_SIZE = 64;
+    static final String BUSY_MESSAGE = "The server was too busy to admit the connection";
+
+    private static final String HOST_NAME = "localhost";
+    private static final int WRITE_BUFFER_SIZE = 8_192;
+    private static final List<String> NATO_ALPHABET = List.of(
+            "alpha",
+            "bravo",
+            "charlie",
+            "delta",
+            "echo",
+            "foxtrot",
+            "golf",
+            "hotel",
+            "india",
+            "juliett",
+            "kilo",
+            "lima",
+            "mike",
+            "november",
+            "oscar",
+            "papa",
+            "quebec",
+            "romeo",
+            "sierra",
+            "tango",
+            "uniform",
+            "uniform",
+            "victor",
+            "whiskey",
+            "xray",
+            "zulu"
+    );
+    private static final List<byte[]> NATO_ALPHABET_BYTES = NATO_ALPHABET.stream().map(FrameCodec::bytes).toList();
+
     private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
     private final int port;
-    private static final String HOST_NAME = "localhost";
+    private final ClientMode clientMode;
+    private final int batchSize;
+    private final Framing framing;
 
     Client(final @Positive int port) {
+        this(port, ClientMode.PER_PHASE, DEFAULT_BATCH_SIZE, Framing.TEXT);
+    }
+
+    // The per-phase mode always speaks text; the other modes use the given framing
+
+    Client(final @Positive int port,
+           final @NotNull ClientMode clientMode,
+           final @Positive int batchSize,
+           final @NotNull Framing framing) {
         super();
 
         assert port > 0;
+        assert clientMode != null;
+        assert batchSize > 0;
+        assert framing != null;
 
         this.port = port;
+        this.clientMode = clientMode;
+        this.batchSize = batchSize;
+        this.framing = framing;
     }
 
     @Override
-    public Void call() {
+    public Void call() throws IOException {
         this.logger.entry();
 
-        this.logger.info("Will transmit on port {}", port);
+        this.logger.info("Will transmit on port {} using {} connections and {} framing", port, this.clientMode, this.framing);
 
-        this.transmit();
+        try {
+            switch (this.clientMode) {
+                case PER_PHASE -> this.transmit();
+                case PERSISTENT -> this.transmitPersistent();
+                case ECHO -> this.transmitEcho();
+            }
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
+
+            throw ioe;  // Let the caller see that the client failed
+        }
 
         this.logger.exit();
 
         return null;
     }
 
-    private void transmit() {
+    private void transmit() throws IOException {
         this.logger.entry();
 
         this.start();
@@ -80,7 +160,356 @@ final class Client implements Callable<Void> {
         this.logger.exit();
     }
 
-    private void start() {
+    private void transmitPersistent() throws IOException {
+        this.logger.entry();
+
+        final var commands = new ArrayList<String>(NATO_ALPHABET.size() + 2);
+
+        commands.add("start");
+        commands.addAll(NATO_ALPHABET);
+        commands.add("exit");   // Signal the server to exit
+
+        if (this.framing == Framing.BINARY) {
+            try (final var clientSocket = new Socket(HOST_NAME, this.port)) {
+                final var encoder = new FrameCodec.Encoder(clientSocket.getOutputStream());
+
+                encoder.preamble();
+                encoder.write(FrameCodec.COMMAND, FrameCodec.bytes("start"));
+
+                final var flushes = this.writeBatched(encoder, NATO_ALPHABET.size(), i -> NATO_ALPHABET_BYTES.get(i));
+
+                encoder.write(FrameCodec.COMMAND, FrameCodec.EXIT);     // Signal the server to exit
+                encoder.flush();
+
+                this.logger.debug("Sent {} frames in {} flushes", commands.size(), flushes + 1);
+            }
+        } else {
+            try (
+                    final var clientSocket = new Socket(HOST_NAME, this.port);
+                    final var out = this.newWriter(clientSocket)
+            ) {
+                final var flushes = this.writeBatched(out, commands.size(), commands::get);
+
+                this.logger.debug("Sent {} commands in {} flushes", commands.size(), flushes);
+            }
+        }
+
+        this.logger.exit();
+    }
+
+    private void transmitEcho() throws IOException {
+        this.logger.entry();
+
+        final var commands = new ArrayList<String>(NATO_ALPHABET.size() + 2);
+
+        commands.add("start");
+        commands.addAll(NATO_ALPHABET);
+        commands.add("exit");   // Signal the server to exit
+
+        final var histogram = new LatencyHistogram();
+
+        if (this.framing == Framing.BINARY) {
+            this.echoSession(NATO_ALPHABET.size(), NATO_ALPHABET::get, 0, histogram);
+            this.exit();    // Echoed data frames are never taken as commands
+        } else {
+            this.echoSession(commands.size(), commands::get, 0, histogram);
+        }
+
+        this.logger.info("Request latency: {}", histogram.summary());
+
+        this.logger.exit();
+    }
+
+    // Records each round trip; with a positive interval requests go out at a fixed rate and latency is
+    // measured from the intended send time to correct for coordinated omission. Returns the connect time.
+
+    long echoSession(final @Positive int messages,
+                     final @NotNull IntFunction<String> lines,
+                     final @PositiveOrZero long intervalNanos,
+                     final @NotNull LatencyHistogram histogram) throws IOException {
+        assert messages > 0;
+        assert lines != null;
+        assert intervalNanos >= 0;
+        assert histogram != null;
+
+        final var connectStart = System.nanoTime();
+
+        try (final var clientSocket = new Socket(HOST_NAME, this.port)) {
+            final var connectNanos = System.nanoTime() - connectStart;
+
+            clientSocket.setTcpNoDelay(true);
+
+            if (this.framing == Framing.BINARY) {
+                final var encoder = new FrameCodec.Encoder(clientSocket.getOutputStream());
+                final var decoder = new FrameCodec.Decoder(clientSocket.getInputStream());
+
+                encoder.preamble();
+
+                this.request(encoder, decoder, FrameCodec.COMMAND, FrameCodec.ECHO, FrameCodec.ECHO_ACKNOWLEDGEMENT);
+
+                this.pace(messages, intervalNanos, histogram, i -> {
+                    final var payload = FrameCodec.bytes(lines.apply(i));
+
+                    this.request(encoder, decoder, FrameCodec.DATA, payload, payload);
+                });
+            } else {
+                try (
+                        final var out = this.newWriter(clientSocket);
+                        final var in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream(), StandardCharsets.UTF_8))
+                ) {
+                    this.request(out, in, Server.ECHO_COMMAND, Server.ECHO_ACKNOWLEDGEMENT);
+
+                    this.pace(messages, intervalNanos, histogram, i -> {
+                        final var line = lines.apply(i);
+
+                        this.request(out, in, line, line);
+                    });
+                }
+            }
+
+            return connectNanos;
+        }
+    }
+
+    private void pace(final @Positive int messages,
+                      final @PositiveOrZero long intervalNanos,
+                      final @NotNull LatencyHistogram histogram,
+                      final @NotNull Request request) throws IOException {
+        final var startNanos = System.nanoTime();
+
+        for (var i = 0; i < messages; i++) {
+            var sendNanos = System.nanoTime();
+
+            if (intervalNanos > 0) {
+                final var intendedNanos = startNanos + i * intervalNanos;
+
+                Timing.parkUntil(intendedNanos);
+
+                sendNanos = intendedNanos;
+            }
+
+            request.send(i);
+
+            histogram.record(System.nanoTime() - sendNanos);
+        }
+    }
+
+    // Sends on a schedule from a second virtual thread while this one reads the replies, so a slow
+    // reply never holds back the next request. Send i is intended for firstSendNanos + i * intervalNanos
+    // and goes out late rather than being skipped when the sender falls behind. Returns the connect time.
+
+    long openLoopSession(final @Positive int messages,
+                         final @NotNull IntFunction<String> lines,
+                         final long firstSendNanos,
+                         final @Positive long intervalNanos,
+                         final @NotNull OpenLoopRecorder recorder) throws IOException {
+        assert messages > 0;
+        assert lines != null;
+        assert intervalNanos > 0;
+        assert recorder != null;
+
+        final var connectStart = System.nanoTime();
+
+        try (final var clientSocket = new Socket(HOST_NAME, this.port)) {
+            final var connectNanos = System.nanoTime() - connectStart;
+            final var openLoop = new OpenLoop(clientSocket, messages, firstSendNanos, intervalNanos, recorder);
+
+            clientSocket.setTcpNoDelay(true);
+
+            if (this.framing == Framing.BINARY) {
+                final var encoder = new FrameCodec.Encoder(clientSocket.getOutputStream());
+                final var decoder = new FrameCodec.Decoder(clientSocket.getInputStream());
+
+                encoder.preamble();
+
+                this.request(encoder, decoder, FrameCodec.COMMAND, FrameCodec.ECHO, FrameCodec.ECHO_ACKNOWLEDGEMENT);
+
+                openLoop.run(i -> {
+                    encoder.write(FrameCodec.DATA, FrameCodec.bytes(lines.apply(i)));
+                    encoder.flush();
+                }, i -> {
+                    if (!decoder.next())
+                        throw new EOFException("Connection closed awaiting a reply frame");
+
+                    if (!decoder.is(FrameCodec.DATA, FrameCodec.bytes(lines.apply(i))))
+                        throw new IOException("Expected the echo of '" + lines.apply(i) + "' but received a "
+                                + (char) decoder.type() + " frame of " + decoder.length() + " bytes");
+                });
+            } else {
+                try (
+                        final var out = this.newWriter(clientSocket);
+                        final var in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream(), StandardCharsets.UTF_8))
+                ) {
+                    this.request(out, in, Server.ECHO_COMMAND, Server.ECHO_ACKNOWLEDGEMENT);
+
+                    openLoop.run(i -> {
+                        out.write(lines.apply(i));
+                        out.write('\n');
+                        out.flush();
+                    }, i -> {
+                        final var reply = in.readLine();
+
+                        if (reply == null)
+                            throw new EOFException("Connection closed awaiting the reply to: " + lines.apply(i));
+
+                        if (!reply.equals(lines.apply(i)))
+                            throw new IOException("Expected '" + lines.apply(i) + "' but received '" + reply + "'");
+                    });
+                }
+            }
+
+            return connectNanos;
+        }
+    }
+
+    // Sends the words over one connection and returns the nanoseconds taken to connect
+
+    long session(final @Positive int messages) throws IOException {
+        assert messages > 0;
+
+        final var connectStart = System.nanoTime();
+
+        try (final var clientSocket = new Socket(HOST_NAME, this.port)) {
+            final var connectNanos = System.nanoTime() - connectStart;
+
+            if (this.framing == Framing.BINARY) {
+                final var encoder = new FrameCodec.Encoder(clientSocket.getOutputStream());
+
+                encoder.preamble();
+
+                this.writeBatched(encoder, messages, i -> NATO_ALPHABET_BYTES.get(i % NATO_ALPHABET_BYTES.size()));
+            } else {
+                try (final var out = this.newWriter(clientSocket)) {
+                    this.writeBatched(out, messages, Client::word);
+                }
+            }
+
+            return connectNanos;
+        }
+    }
+
+    private void request(final @NotNull BufferedWriter out,
+                         final @NotNull BufferedReader in,
+                         final @NotNull String line,
+                         final @NotNull String expected) throws IOException {
+        assert out != null;
+        assert in != null;
+        assert line != null;
+        assert expected != null;
+
+        out.write(line);
+        out.write('\n');
+        out.flush();
+
+        final var reply = in.readLine();
+
+        if (reply == null)
+            throw new EOFException("Connection closed awaiting the reply to: " + line);
+
+        if (reply.equals(Server.BUSY_RESPONSE) && !expected.equals(Server.BUSY_RESPONSE))
+            throw new IOException(BUSY_MESSAGE);
+
+        if (!reply.equals(expected))
+            throw new IOException("Expected '" + expected + "' but received '" + reply + "'");
+    }
+
+    private void request(final @NotNull FrameCodec.Encoder encoder,
+                         final @NotNull FrameCodec.Decoder decoder,
+                         final byte type,
+                         final @NotNull byte[] payload,
+                         final @NotNull byte[] expected) throws IOException {
+        assert encoder != null;
+        assert decoder != null;
+        assert payload != null;
+        assert expected != null;
+
+        encoder.write(type, payload);
+        encoder.flush();
+
+        if (!decoder.next())
+            throw new EOFException("Connection closed awaiting a reply frame");
+
+        if (!decoder.is(type, expected))
+            throw new IOException("Expected a " + (char) type + " frame of " + expected.length + " bytes but received a "
+                    + (char) decoder.type() + " frame of " + decoder.length() + " bytes");
+    }
+
+    static String word(final @PositiveOrZero int index) {
+        return NATO_ALPHABET.get(index % NATO_ALPHABET.size());
+    }
+
+    void sendExit() throws IOException {
+        this.exit();
+    }
+
+    private BufferedWriter newWriter(final @NotNull Socket clientSocket) throws IOException {
+        assert clientSocket != null;
+
+        return new BufferedWriter(new OutputStreamWriter(clientSocket.getOutputStream(), StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+    }
+
+    // Flushes once per batch rather than once per line and returns the number of flushes
+
+    private int writeBatched(final @NotNull BufferedWriter out,
+                             final @PositiveOrZero int count,
+                             final @NotNull IntFunction<String> lines) throws IOException {
+        assert out != null;
+        assert lines != null;
+
+        var pending = 0;
+        var flushes = 0;
+
+        for (var i = 0; i < count; i++) {
+            out.write(lines.apply(i));
+            out.write('\n');
+
+            if (++pending == this.batchSize) {
+                out.flush();
+
+                pending = 0;
+                flushes++;
+            }
+        }
+
+        if (pending > 0) {
+            out.flush();
+
+            flushes++;
+        }
+
+        return flushes;
+    }
+
+    private int writeBatched(final @NotNull FrameCodec.Encoder encoder,
+                             final @PositiveOrZero int count,
+                             final @NotNull IntFunction<byte[]> payloads) throws IOException {
+        assert encoder != null;
+        assert payloads != null;
+
+        var pending = 0;
+        var flushes = 0;
+
+        for (var i = 0; i < count; i++) {
+            encoder.write(FrameCodec.DATA, payloads.apply(i));
+
+            if (++pending == this.batchSize) {
+                encoder.flush();
+
+                pending = 0;
+                flushes++;
+            }
+        }
+
+        if (pending > 0) {
+            encoder.flush();
+
+            flushes++;
+        }
+
+        return flushes;
+    }
+
+    private void start() throws IOException {
         this.logger.entry();
 
         try (
@@ -88,59 +517,26 @@ final class Client implements Callable<Void> {
                 final var out = new PrintWriter(clientSocket.getOutputStream(), true)
         ) {
             out.println("start");
-        } catch (final IOException ioe) {
-            this.logger.catching(ioe);
         }
 
         this.logger.exit();
     }
 
-    private void natoAlphabet() {
+    private void natoAlphabet() throws IOException {
         this.logger.entry();
 
-        final var list = List.of(
-                "alpha",
-                "bravo",
-                "charlie",
-                "delta",
-                "echo",
-                "foxtrot",
-                "golf",
-                "hotel",
-                "india",
-                "juliett",
-                "kilo",
-                "lima",
-                "mike",
-                "november",
-                "oscar",
-                "papa",
-                "quebec",
-                "romeo",
-                "sierra",
-                "tango",
-                "uniform",
-                "uniform",
-                "victor",
-                "whiskey",
-                "xray",
-                "zulu"
-        );
-
         try (
                 final var clientSocket = new Socket(HOST_NAME, this.port);
                 final var out = new PrintWriter(clientSocket.getOutputStream(), true)
         ) {
-            for (final var word : list)
+            for (final var word : NATO_ALPHABET)
                 out.println(word);
-        } catch (final IOException ioe) {
-            this.logger.catching(ioe);
         }
 
         this.logger.exit();
     }
 
-    private void exit() {
+    private void exit() throws IOException {
         this.logger.entry();
 
         try (
@@ -148,10 +544,101 @@ final class Client implements Callable<Void> {
                 final var out = new PrintWriter(clientSocket.getOutputStream(), true)
         ) {
             out.println("exit");    // Signal the server to exit
-        } catch (final IOException ioe) {
-            this.logger.catching(ioe);
         }
 
         this.logger.exit();
     }
+
+    @FunctionalInterface
+    private interface Request {
+        void send(int index) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Reply {
+        void receive(int index) throws IOException;
+    }
+
+    // One open-loop session: the sender records when each request went out and the reader matches the replies to them in order
+
+    private static final class OpenLoop {
+        private final Socket socket;
+        private final int messages;
+        private final long firstSendNanos;
+        private final long intervalNanos;
+        private final OpenLoopRecorder recorder;
+        private final AtomicLongArray sentNanos;
+        private final AtomicReference<IOException> senderFailure = new AtomicReference<>();
+
+        private OpenLoop(final @NotNull Socket socket,
+                         final @Positive int messages,
+                         final long firstSendNanos,
+                         final @Positive long intervalNanos,
+                         final @NotNull OpenLoopRecorder recorder) {
+            this.socket = socket;
+            this.messages = messages;
+            this.firstSendNanos = firstSendNanos;
+            this.intervalNanos = intervalNanos;
+            this.recorder = recorder;
+            this.sentNanos = new AtomicLongArray(messages);
+        }
+
+        private void run(final @NotNull Request request, final @NotNull Reply reply) throws IOException {
+            final var sender = Thread.ofVirtual().name("open-loop-sender").start(() -> this.send(request));
+
+            try {
+                for (var i = 0; i < this.messages; i++) {
+                    reply.receive(i);
+
+                    this.recorder.received(this.intendedNanos(i), this.sentNanos.get(i), System.nanoTime());
+                }
+            } catch (final IOException ioe) {
+                this.socket.close();    // Stops the sender too
+
+                if (this.senderFailure.get() == null)
+                    throw ioe;
+            } finally {
+                try {
+                    sender.join();
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt(); // Restore the interrupt status
+
+                    throw new InterruptedIOException("Interrupted awaiting the open-loop sender");
+                }
+            }
+
+            if (this.senderFailure.get() != null)
+                throw this.senderFailure.get();
+        }
+
+        private void send(final @NotNull Request request) {
+            try {
+                for (var i = 0; i < this.messages; i++) {
+                    final var intendedNanos = this.intendedNanos(i);
+
+                    Timing.parkUntil(intendedNanos);
+
+                    final var actualNanos = System.nanoTime();
+
+                    this.sentNanos.set(i, actualNanos);
+
+                    request.send(i);
+
+                    this.recorder.sent(intendedNanos, actualNanos);
+                }
+            } catch (final IOException ioe) {
+                this.senderFailure.set(ioe);
+
+                try {
+                    this.socket.close();    // Stops the reader waiting on replies that will never come
+                } catch (final IOException closeFailure) {
+                    ioe.addSuppressed(closeFailure);
+                }
+            }
+        }
+
+        private long intendedNanos(final int index) {
+            return this.firstSendNanos + index * this.intervalNanos;
+        }
+    }
 }
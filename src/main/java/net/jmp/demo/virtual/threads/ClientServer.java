@@ -1,10 +1,11 @@
 package net.jmp.demo.virtual.threads;
 
 /*
+ * (#)ClientServer.java 0.5.0   10/18/2026
  * (#)ClientServer.java 0.3.0   03/22/2024
  *
  * @author    Jonathan Parker
- * @version   0.3.0
+ * @version   0.5.0
  * @since     0.3.0
  *
  * MIT License
@@ -33,74 +34,289 @@ package net.jmp.demo.virtual.threads;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 
+import java.time.Duration;
+import java.time.Instant;
+
+import java.util.Optional;
+
 import java.util.concurrent.*;
 
+import java.util.function.BooleanSupplier;
+
 import org.slf4j.LoggerFactory;
 
 import org.slf4j.ext.XLogger;
 
 final class ClientServer implements Runnable {
+    static final String STRUCTURED_PROPERTY = "net.jmp.demo.virtual.threads.structured";
+    static final String RUN_TIMEOUT_PROPERTY = "net.jmp.demo.virtual.threads.runTimeoutSeconds";
+
+    private static final long STARTUP_TIMEOUT_SECONDS = 10;
+    private static final long STARTUP_POLL_MILLIS = 100;
+    private static final long DEFAULT_RUN_TIMEOUT_SECONDS = 300;
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+
     private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
-    private final int port;
+    private final AcceptorProfile acceptors;
+    private final ServerMode serverMode;
+    private final ClientMode clientMode;
+    private final Framing framing;
+    private final LoadProfile loadProfile;
+    private final boolean structured;
+    private final ThreadKind threadKind;
+    private final Duration runTimeout;
+
+    private volatile LoadGenerator loadGenerator;
+    private volatile boolean failed;
 
     ClientServer(final @Positive int port) {
+        this(port, ServerMode.BLOCKING, ClientMode.PER_PHASE, Framing.TEXT, null, false, ThreadKind.fromSystemProperty());
+    }
+
+    // With a load profile the load generator replaces the single client. The thread kind runs the
+    // blocking server's connection handlers; the clients stay on virtual threads either way.
+
+    ClientServer(final @Positive int port,
+                 final @NotNull ServerMode serverMode,
+                 final @NotNull ClientMode clientMode,
+                 final @NotNull Framing framing,
+                 final LoadProfile loadProfile,
+                 final boolean structured,
+                 final @NotNull ThreadKind threadKind) {
         super();
 
         assert port > 0;
+        assert serverMode != null;
+        assert clientMode != null;
+        assert framing != null;
+        assert threadKind != null;
 
-        this.port = port;
+        this.acceptors = AcceptorProfile.fromSystemProperties(port);
+        this.serverMode = serverMode;
+        this.clientMode = clientMode;
+        this.framing = framing;
+        this.loadProfile = loadProfile;
+        this.structured = structured;
+        this.threadKind = threadKind;
+        this.runTimeout = Duration.ofSeconds(Long.getLong(RUN_TIMEOUT_PROPERTY, DEFAULT_RUN_TIMEOUT_SECONDS));
     }
 
     @Override
     public void run() {
         this.logger.entry();
 
-        final var executorService = Executors.newFixedThreadPool(2);
+        if (this.structured)
+            this.runStructured();
+        else
+            this.runPooled();
 
-        final var server = this.startServer(executorService);
-        final var client = this.startClient(executorService);
+        this.logger.exit();
+    }
+
+    // Present when a load profile was run to completion; a failed run is reported as a single failure
+
+    Optional<WorkloadResult> getLoadResult() {
+        if (this.failed)
+            return Optional.of(WorkloadResult.failure(this.loadProfile == null ? "exchange" : "server"));
+
+        final var generator = this.loadGenerator;
+
+        return generator == null ? Optional.empty() : generator.getResult();
+    }
+
+    // The server is stopped however the run ends, so that no pool thread is left blocking in accept()
+
+    private void runPooled() {
+        this.logger.entry();
+
+        final var executorService = Executors.newFixedThreadPool(2);
+        final var semaphore = new Semaphore(0);    // The server releases it once it is listening
+        final var server = this.newServer(semaphore);
+        final var serverFuture = this.startServer(executorService, server);
+        final var deadline = System.nanoTime() + this.runTimeout.toNanos();
 
         try {
-            this.logger.debug("Begin waiting on client");
-            client.get();
-            this.logger.debug("End waiting on client");
+            this.logger.debug("Begin waiting on semaphore");
+
+            if (this.awaitServer(semaphore, () -> !serverFuture.isDone())) {
+                this.logger.debug("End waiting on semaphore");
+
+                final var client = this.startClient(executorService);
+
+                this.logger.debug("Begin waiting on client");
+                client.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                this.logger.debug("End waiting on client");
 
-            this.logger.debug("Begin waiting on server");
-            server.get();
-            this.logger.debug("End waiting on server");
+                this.logger.debug("Begin waiting on server");
+                serverFuture.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                this.logger.debug("End waiting on server");
+            } else {
+                this.failed = true;
+
+                if (serverFuture.isDone())
+                    serverFuture.get();     // Throws the exception that stopped the server from listening
+            }
+        } catch (final TimeoutException e) {
+            this.failed = true;
+
+            this.logger.error("The client/server run did not finish within {}", this.runTimeout);
         } catch (final InterruptedException | ExecutionException e) {
-            this.logger.catching(e);
+            this.failed = true;
+
+            this.logger.error("Client/server run failed", e.getCause() != null ? e.getCause() : e);
 
             if (e instanceof InterruptedException)
                 Thread.currentThread().interrupt(); // Restore the interrupt status
-        }
+        } finally {
+            server.stop();
+
+            this.awaitStopped(serverFuture);
 
-        executorService.shutdown();
+            executorService.shutdownNow();  // Interrupts a client that is still running
+        }
 
         this.logger.exit();
     }
 
-    private Future<Void> startServer(final @NotNull ExecutorService executorService) {
-        this.logger.entry(executorService);
+    /*
+     * The server and client run as one scope. The first
+     * failure shuts the scope down, which interrupts the
+     * sibling, and the server is stopped so that nothing
+     * is left blocking in accept() or on a connection.
+     * A run that outlasts the run timeout is shut down
+     * the same way.
+     */
+    private void runStructured() {
+        this.logger.entry();
 
-        assert executorService != null;
+        final var semaphore = new Semaphore(0);
+        final var server = this.newServer(semaphore);
+        final var deadline = Instant.now().plus(this.runTimeout);
+
+        this.logger.info("Starting the {} server in a structured task scope", this.serverMode);
 
-        final var semaphore = new Semaphore(1);
+        try (final var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+            final var serverTask = scope.fork(server);
 
-        Future<Void> future = executorService.submit(() -> new Server(semaphore, this.port).call());
+            try {
+                if (this.awaitServer(semaphore, () -> serverTask.state() == StructuredTaskScope.Subtask.State.UNAVAILABLE)) {
+                    scope.fork(this.newClient());
+
+                    this.logger.debug("Begin joining the scope");
+                    scope.joinUntil(deadline);
+                    this.logger.debug("End joining the scope");
+                } else {
+                    this.failed = true;
+
+                    scope.shutdown();
+                    scope.join();
+                }
+
+                scope.throwIfFailed();
+            } finally {
+                server.stop();
+                scope.shutdown();
+            }
+        } catch (final TimeoutException e) {
+            this.failed = true;
+
+            this.logger.error("The client/server scope did not finish within {}", this.runTimeout);
+        } catch (final InterruptedException | ExecutionException e) {
+            this.failed = true;
+
+            this.logger.error("Client/server scope failed", e.getCause() != null ? e.getCause() : e);
+
+            if (e instanceof InterruptedException)
+                Thread.currentThread().interrupt(); // Restore the interrupt status
+        }
+
+        this.logger.exit();
+    }
+
+    // Waits a bounded time for a stopped server to end; an error it ended with has already been reported
+
+    private void awaitStopped(final @NotNull Future<Void> serverFuture) {
+        this.logger.entry(serverFuture);
+
+        assert serverFuture != null;
 
         try {
-            this.logger.debug("Begin waiting on semaphore");
-            semaphore.acquire();
-            this.logger.debug("End waiting on semaphore");
-        } catch (final InterruptedException ie) {
-            this.logger.catching(ie);
+            serverFuture.get(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (final TimeoutException e) {
+            this.failed = true;
 
+            this.logger.error("The server did not stop within {} seconds", STOP_TIMEOUT_SECONDS);
+        } catch (final ExecutionException e) {
+            this.logger.debug("The server ended with an exception", e.getCause());
+        } catch (final InterruptedException e) {
             Thread.currentThread().interrupt(); // Restore the interrupt status
-
-            throw new SemaphoreException("Acquisition of the semaphore was interrupted", ie);
         }
 
+        this.logger.exit();
+    }
+
+    // Gives up when the server ends before it is listening, say on a port already in use, or the timeout passes
+
+    private boolean awaitServer(final @NotNull Semaphore semaphore, final @NotNull BooleanSupplier serverRunning) throws InterruptedException {
+        this.logger.entry(semaphore, serverRunning);
+
+        assert semaphore != null;
+        assert serverRunning != null;
+
+        final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(STARTUP_TIMEOUT_SECONDS);
+
+        var ready = false;
+
+        while (!ready && serverRunning.getAsBoolean() && System.nanoTime() < deadline)
+            ready = semaphore.tryAcquire(STARTUP_POLL_MILLIS, TimeUnit.MILLISECONDS);
+
+        if (!ready)
+            this.logger.error("The server did not start listening on port(s) {}", this.acceptors.ports());
+
+        this.logger.exit(ready);
+
+        return ready;
+    }
+
+    private StoppableServer newServer(final @NotNull Semaphore semaphore) {
+        assert semaphore != null;
+
+        return switch (this.serverMode) {
+            case BLOCKING -> new Server(semaphore,
+                    this.acceptors,
+                    AdmissionControl.fromSystemProperties(),
+                    ConnectionTimeouts.fromSystemProperties(),
+                    this.threadKind);
+            case SELECTOR -> new SelectorServer(semaphore, this.acceptors);
+        };
+    }
+
+    private Callable<Void> newClient() {
+        final var client = new Client(this.acceptors.firstPort(), this.clientMode, Client.DEFAULT_BATCH_SIZE, this.framing);
+
+        if (this.loadProfile == null)
+            return client;
+
+        return () -> {
+            this.loadGenerator = new LoadGenerator(this.acceptors.ports(), this.loadProfile, this.framing);
+            this.loadGenerator.call();
+
+            client.sendExit();
+
+            return null;
+        };
+    }
+
+    private Future<Void> startServer(final @NotNull ExecutorService executorService, final @NotNull StoppableServer server) {
+        this.logger.entry(executorService, server);
+
+        assert executorService != null;
+        assert server != null;
+
+        this.logger.info("Starting the {} server", this.serverMode);
+
+        Future<Void> future = executorService.submit(server);
+
         this.logger.exit(future);
 
         return future;
@@ -111,7 +327,7 @@ final class ClientServer implements Runnable {
 
         assert executorService != null;
 
-        Future<Void> future = executorService.submit(() -> new Client(this.port).call());
+        Future<Void> future = executorService.submit(this.newClient());
 
         this.logger.exit(future);
 
@@ -0,0 +1,219 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)CommandRegistry.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+
+import java.io.IOException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import java.util.concurrent.CountDownLatch;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * The commands a server understands, found by a single
+ * hash lookup on the verb instead of a chain of prefix
+ * tests. A command line is a verb, optionally followed
+ * by a dash and a non-negative numeric argument, as in
+ * sleep-250 or compute-100000. Lines whose verb is not
+ * registered are ordinary messages.
+ */
+final class CommandRegistry {
+    static final String START = "start";
+    static final String EXIT = "exit";
+    static final String ECHO = Server.ECHO_COMMAND;
+    static final String STATS = "stats";
+    static final String SLEEP = "sleep";        // Argument: milliseconds to block, as a request doing I/O would
+    static final String COMPUTE = "compute";    // Argument: iterations of arithmetic, as a CPU-bound request would
+    static final String THREADS = "threads";    // Argument: most thread groups to list; loopback clients only
+
+    static final String DONE_RESPONSE = "done";
+    static final String ERROR_RESPONSE = "error";
+
+    private static final char ARGUMENT_SEPARATOR = '-';
+    private static final int DEFAULT_THREAD_GROUPS = 20;
+
+    private final Map<String, Command> commands = new HashMap<>();
+    private final LongAdder checksum = new LongAdder();
+
+    CommandRegistry() {
+        super();
+    }
+
+    // Every command, for a connection that is not echoing
+
+    static CommandRegistry standard(final @NotNull CountDownLatch latch, final @NotNull ServerMetrics metrics) {
+        assert latch != null;
+        assert metrics != null;
+
+        final var registry = echoing(latch);
+
+        registry.register(START, (session, argument) -> null);
+        registry.register(ECHO, (session, argument) -> {
+            session.startEcho();
+
+            return Server.ECHO_ACKNOWLEDGEMENT;
+        });
+        registry.register(STATS, (session, argument) -> metrics.summary());
+        registry.register(SLEEP, (session, argument) -> {
+            Thread.sleep(argument);
+
+            return DONE_RESPONSE;
+        });
+        registry.register(COMPUTE, (session, argument) -> {
+            registry.compute(argument);
+
+            return DONE_RESPONSE;
+        });
+        registry.register(THREADS, (session, argument) -> {
+            if (!session.isLocal())
+                throw new IllegalArgumentException("Thread dumps are only for loopback clients");
+
+            return threadDump(argument == 0 ? DEFAULT_THREAD_GROUPS : (int) Math.min(argument, Integer.MAX_VALUE));
+        });
+
+        return registry;
+    }
+
+    // An echoing connection echoes every line, so only exit still acts as a command
+
+    static CommandRegistry echoing(final @NotNull CountDownLatch latch) {
+        assert latch != null;
+
+        final var registry = new CommandRegistry();
+
+        registry.register(EXIT, (session, argument) -> {
+            latch.countDown();
+
+            return null;
+        });
+
+        return registry;
+    }
+
+    CommandRegistry register(final @NotNull String verb, final @NotNull Command command) {
+        assert verb != null;
+        assert command != null;
+
+        if (verb.isEmpty() || verb.indexOf(ARGUMENT_SEPARATOR) >= 0)
+            throw new IllegalArgumentException("A verb must be non-empty and free of '" + ARGUMENT_SEPARATOR + "': " + verb);
+
+        if (this.commands.putIfAbsent(verb, command) != null)
+            throw new IllegalArgumentException("Verb already registered: " + verb);
+
+        return this;
+    }
+
+    // Returns null when the line is not a command
+
+    Command resolve(final @NotNull String line) {
+        assert line != null;
+
+        final var separator = line.indexOf(ARGUMENT_SEPARATOR);
+
+        return this.commands.get(separator < 0 ? line : line.substring(0, separator));
+    }
+
+    // Zero when the line has no argument; a malformed or negative one is an IllegalArgumentException
+
+    static long argument(final @NotNull String line) {
+        assert line != null;
+
+        final var separator = line.indexOf(ARGUMENT_SEPARATOR);
+
+        if (separator < 0)
+            return 0;
+
+        final var argument = Long.parseLong(line, separator + 1, line.length(), 10);
+
+        if (argument < 0)
+            throw new IllegalArgumentException("Command arguments must not be negative: " + line);
+
+        return argument;
+    }
+
+    // The summary spans several lines, so an empty line ends the reply
+
+    private static String threadDump(final @Positive int maxGroups) {
+        try {
+            return ThreadDump.capture().summary(maxGroups) + '\n';
+        } catch (final IOException ioe) {
+            return ERROR_RESPONSE + ": " + ioe.getMessage();
+        }
+    }
+
+    private void compute(final @PositiveOrZero long iterations) {
+        var value = iterations;
+
+        for (var i = 0L; i < iterations; i++)
+            value = value * 6_364_136_223_846_793_005L + 1_442_695_040_888_963_407L;
+
+        this.checksum.add(value);   // Keeps the loop from being optimized away
+    }
+
+    static final class Session {
+        private final boolean local;
+
+        private boolean echo;
+
+        Session(final boolean local) {
+            super();
+
+            this.local = local;
+        }
+
+        // Whether the client connected over the loopback interface
+
+        boolean isLocal() {
+            return this.local;
+        }
+
+        boolean isEcho() {
+            return this.echo;
+        }
+
+        void startEcho() {
+            this.echo = true;
+        }
+    }
+
+    @FunctionalInterface
+    interface Command {
+        // Returns the reply, or null for a command that sends none
+
+        String execute(@NotNull Session session, @PositiveOrZero long argument) throws InterruptedException;
+    }
+}
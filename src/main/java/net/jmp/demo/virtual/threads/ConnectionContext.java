@@ -0,0 +1,195 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)ConnectionContext.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.net.Socket;
+
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.MDC;
+
+/*
+ * What a server knows about one connection, bound to the
+ * connection's thread with a ScopedValue for as long as
+ * it is served. Unlike a ThreadLocal, a scoped value adds
+ * no map to each of 100,000 virtual threads and cannot
+ * outlive the scope that bound it. The counters are plain
+ * fields, as only the connection's thread touches them.
+ * The connection id is also put in the logging MDC so
+ * every line logged for the connection carries it; the
+ * MDC is itself thread-local, so the server.mdc property
+ * can turn that off when connections run into the 100,000s.
+ */
+final class ConnectionContext {
+    static final ScopedValue<ConnectionContext> CURRENT = ScopedValue.newInstance();
+    static final String MDC_KEY = "connection";
+    static final String MDC_PROPERTY = "net.jmp.demo.virtual.threads.server.mdc";
+
+    private static final AtomicLong ids = new AtomicLong();
+    private static final boolean MDC_ENABLED = Boolean.parseBoolean(System.getProperty(MDC_PROPERTY, "true"));
+
+    private final long id = ids.incrementAndGet();
+    private final long startNanos = System.nanoTime();
+    private final Socket socket;
+
+    private long bytesRead;
+    private long bytesWritten;
+    private long messages;
+
+    ConnectionContext(final @NotNull Socket socket) {
+        super();
+
+        assert socket != null;
+
+        this.socket = socket;
+    }
+
+    // Only valid inside run(), on the connection's thread
+
+    static ConnectionContext current() {
+        return CURRENT.get();
+    }
+
+    void run(final @NotNull Runnable task) {
+        assert task != null;
+
+        ScopedValue.runWhere(CURRENT, this, () -> {
+            if (MDC_ENABLED) {
+                MDC.put(MDC_KEY, Long.toString(this.id));
+
+                try {
+                    task.run();
+                } finally {
+                    MDC.remove(MDC_KEY);
+                }
+            } else {
+                task.run();
+            }
+        });
+    }
+
+    long getId() {
+        return this.id;
+    }
+
+    Socket getSocket() {
+        return this.socket;
+    }
+
+    long getBytesRead() {
+        return this.bytesRead;
+    }
+
+    long getBytesWritten() {
+        return this.bytesWritten;
+    }
+
+    long getMessages() {
+        return this.messages;
+    }
+
+    long getAgeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startNanos);
+    }
+
+    void messageRead() {
+        this.messages++;
+    }
+
+    InputStream counting(final @NotNull InputStream in) {
+        assert in != null;
+
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                final var value = super.read();
+
+                if (value != -1)
+                    ConnectionContext.this.bytesRead++;
+
+                return value;
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                final var bytes = super.read(buffer, offset, length);
+
+                if (bytes > 0)
+                    ConnectionContext.this.bytesRead += bytes;
+
+                return bytes;
+            }
+        };
+    }
+
+    // Passes bulk writes straight through, where FilterOutputStream would write them a byte at a time
+
+    OutputStream counting(final @NotNull OutputStream out) {
+        assert out != null;
+
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(final int value) throws IOException {
+                this.out.write(value);
+
+                ConnectionContext.this.bytesWritten++;
+            }
+
+            @Override
+            public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+                this.out.write(buffer, offset, length);
+
+                ConnectionContext.this.bytesWritten += length;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.format("connection %d from %s: %d message(s), %d byte(s) in, %d byte(s) out, open %d ms",
+                this.id,
+                this.socket.getRemoteSocketAddress(),
+                this.messages,
+                this.bytesRead,
+                this.bytesWritten,
+                this.getAgeMillis());
+    }
+}
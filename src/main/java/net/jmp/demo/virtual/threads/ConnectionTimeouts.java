@@ -0,0 +1,188 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)ConnectionTimeouts.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import java.time.Duration;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Per-connection timeouts for the blocking server,
+ * enforced with SO_TIMEOUT so that a virtual thread
+ * waiting on a silent client is just a timed park.
+ *
+ * The idle timeout bounds the wait for any bytes at all.
+ * The read timeout bounds the time from the first byte
+ * of a message to its end, which is what catches a
+ * slowloris client: trickling a byte at a time resets
+ * SO_TIMEOUT on every read but not this deadline. A
+ * zero duration disables either one.
+ */
+record ConnectionTimeouts(Duration idle, Duration read) {
+    static final String PREFIX = "net.jmp.demo.virtual.threads.server.";
+    static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60_000;
+    static final long DEFAULT_READ_TIMEOUT_MILLIS = 10_000;
+
+    ConnectionTimeouts {
+        assert idle != null && !idle.isNegative();
+        assert read != null && !read.isNegative();
+    }
+
+    static ConnectionTimeouts fromSystemProperties() {
+        return new ConnectionTimeouts(
+                Duration.ofMillis(Long.getLong(PREFIX + "idleTimeoutMillis", DEFAULT_IDLE_TIMEOUT_MILLIS)),
+                Duration.ofMillis(Long.getLong(PREFIX + "readTimeoutMillis", DEFAULT_READ_TIMEOUT_MILLIS))
+        );
+    }
+
+    TimedInputStream apply(final @NotNull Socket socket, final @NotNull InputStream in, final @NotNull ServerMetrics metrics) {
+        return new TimedInputStream(socket, in, metrics, this.idle.toMillis(), this.read.toNanos());
+    }
+
+    /*
+     * Sits between the socket and any buffering. The
+     * protocol loop calls messageCompleted() after each
+     * line or frame; the next byte read starts the clock
+     * on the following message.
+     */
+    static final class TimedInputStream extends FilterInputStream {
+        private final Socket socket;
+        private final ServerMetrics metrics;
+        private final long idleMillis;
+        private final long readNanos;
+
+        private long messageDeadline;   // Zero between messages
+        private boolean deadlineBound;  // The read timeout, not the idle timeout, set SO_TIMEOUT
+        private long soTimeout = -1;
+
+        private TimedInputStream(final @NotNull Socket socket,
+                                 final @NotNull InputStream in,
+                                 final @NotNull ServerMetrics metrics,
+                                 final long idleMillis,
+                                 final long readNanos) {
+            super(in);
+
+            assert socket != null;
+            assert metrics != null;
+
+            this.socket = socket;
+            this.metrics = metrics;
+            this.idleMillis = idleMillis;
+            this.readNanos = readNanos;
+        }
+
+        void messageCompleted() {
+            this.messageDeadline = 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            this.arm();
+
+            try {
+                final var value = super.read();
+
+                this.started(value == -1 ? 0 : 1);
+
+                return value;
+            } catch (final SocketTimeoutException ste) {
+                throw this.timedOut(ste);
+            }
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            this.arm();
+
+            try {
+                final var bytes = super.read(buffer, offset, length);
+
+                this.started(bytes);
+
+                return bytes;
+            } catch (final SocketTimeoutException ste) {
+                throw this.timedOut(ste);
+            }
+        }
+
+        // SO_TIMEOUT becomes the idle timeout or what is left of the message deadline, whichever is sooner
+
+        private void arm() throws IOException {
+            var timeout = this.idleMillis;
+
+            this.deadlineBound = false;
+
+            if (this.messageDeadline != 0) {
+                final var remainingNanos = this.messageDeadline - System.nanoTime();
+
+                this.deadlineBound = true;
+
+                if (remainingNanos <= 0)
+                    throw this.timedOut(new SocketTimeoutException("Message not completed within the read timeout"));
+
+                final var remainingMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+
+                if (timeout == 0 || remainingMillis < timeout)
+                    timeout = remainingMillis;
+                else
+                    this.deadlineBound = false;
+            }
+
+            if (timeout != this.soTimeout) {
+                this.socket.setSoTimeout((int) Math.min(timeout, Integer.MAX_VALUE));
+                this.soTimeout = timeout;
+            }
+        }
+
+        private void started(final int bytes) {
+            if (bytes > 0 && this.messageDeadline == 0 && this.readNanos > 0)
+                this.messageDeadline = System.nanoTime() + this.readNanos;
+        }
+
+        private SocketTimeoutException timedOut(final @NotNull SocketTimeoutException ste) {
+            if (this.deadlineBound)
+                this.metrics.readTimedOut();
+            else
+                this.metrics.idleTimedOut();
+
+            return ste;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)CountingAsyncAppender.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import ch.qos.logback.classic.AsyncAppender;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * An asynchronous appender that counts what it drops.
+ * Once the bounded queue fills past the discarding
+ * threshold, logback silently discards TRACE, DEBUG
+ * and INFO events so that logging threads never block;
+ * this keeps a tally so a run can say how much of its
+ * log it lost. Public because logback instantiates it
+ * by reflection from config/logback.xml.
+ */
+public final class CountingAsyncAppender extends AsyncAppender {
+    private static final LongAdder droppedEvents = new LongAdder();
+
+    public CountingAsyncAppender() {
+        super();
+    }
+
+    // Only consulted once the queue is past the discarding threshold, so true means the event is dropped
+
+    @Override
+    protected boolean isDiscardable(final ILoggingEvent event) {
+        final var discardable = super.isDiscardable(event);
+
+        if (discardable)
+            droppedEvents.increment();
+
+        return discardable;
+    }
+
+    @Override
+    public void stop() {
+        if (droppedEvents.sum() > 0)
+            this.addWarn("Appender [" + this.getName() + "] dropped " + droppedEvents.sum() + " event(s) with a queue of " + this.getQueueSize());
+
+        super.stop();
+    }
+
+    // Across every instance in the JVM
+
+    static long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+}
@@ -1,10 +1,11 @@
 package net.jmp.demo.virtual.threads;
 
 /*
+ * (#)Easy.java 0.5.0   10/18/2026
  * (#)Easy.java 0.3.0   03/22/2024
  *
  * @author    Jonathan Parker
- * @version   0.3.0
+ * @version   0.5.0
  * @since     0.3.0
  *
  * MIT License
@@ -30,24 +31,35 @@ package net.jmp.demo.virtual.threads;
  * SOFTWARE.
  */
 
+import jakarta.validation.constraints.NotNull;
+
 import org.slf4j.LoggerFactory;
 
 import org.slf4j.ext.XLogger;
 
 final class Easy implements Runnable {
     private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
+    private final ThreadKind threadKind;
 
     Easy() {
+        this(ThreadKind.fromSystemProperty());
+    }
+
+    Easy(final @NotNull ThreadKind threadKind) {
         super();
+
+        assert threadKind != null;
+
+        this.threadKind = threadKind;
     }
 
     @Override
     public void run() {
         this.logger.entry();
 
-        // Thread.ofVirtual() returns Thread.Builder
+        // Thread.ofVirtual() returns Thread.Builder, and so does the thread kind for the other kinds
 
-        final var thread = Thread.ofVirtual().start(() -> this.logger.info("Hello"));
+        final var thread = this.threadKind.newBuilder().start(() -> this.logger.info("Hello"));
 
         try {
             thread.join();
@@ -1,10 +1,11 @@
 package net.jmp.demo.virtual.threads;
 
 /*
+ * (#)Executor.java 0.5.0   10/18/2026
  * (#)Executor.java 0.3.0   03/22/2024
  *
  * @author    Jonathan Parker
- * @version   0.3.0
+ * @version   0.5.0
  * @since     0.3.0
  *
  * MIT License
@@ -30,27 +31,37 @@ package net.jmp.demo.virtual.threads;
  * SOFTWARE.
  */
 
+import jakarta.validation.constraints.NotNull;
+
 import org.slf4j.LoggerFactory;
 
 import org.slf4j.ext.XLogger;
 
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 final class Executor implements Runnable {
     private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
+    private final ThreadKind threadKind;
 
     Executor() {
+        this(ThreadKind.fromSystemProperty());
+    }
+
+    Executor(final @NotNull ThreadKind threadKind) {
         super();
+
+        assert threadKind != null;
+
+        this.threadKind = threadKind;
     }
 
     @Override
     public void run() {
         this.logger.entry();
 
-        try (final ExecutorService myExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+        try (final ExecutorService myExecutor = this.threadKind.newExecutor()) {
             final Future<?> future = myExecutor.submit(() -> this.logger.info("Running task in a future"));
 
             try {
@@ -0,0 +1,597 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)FootprintProfiler.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.LoggerFactory;
+
+import org.slf4j.ext.XLogger;
+
+/*
+ * Holds N idle connections at a time, N growing towards a
+ * million, and measures what each one costs. The blocking
+ * design parks a virtual thread per connection in readLine()
+ * behind the same reader and writer chain Server.serveLines
+ * builds; the selector design keeps one SelectorServer
+ * connection record per connection. Neither opens sockets,
+ * so kernel buffers and file descriptors are left out and
+ * the two are compared on what the JVM holds. Retained heap
+ * and stack chunks come from a class histogram, which is a
+ * full collection, so its duration shows what a full GC
+ * costs with every connection live.
+ */
+final class FootprintProfiler implements Runnable {
+    static final String PROPERTY = "net.jmp.demo.virtual.threads.footprint";
+    static final String PREFIX = PROPERTY + ".";
+
+    private static final String STACK_CHUNK_CLASS = "jdk.internal.vm.StackChunk";
+    private static final String DIAGNOSTIC_COMMAND = "com.sun.management:type=DiagnosticCommand";
+    private static final long SETTLE_MILLIS = 100;
+    private static final int SETTLE_ATTEMPTS = 10;
+    private static final long SETTLED_BYTES = 64 * 1_024;
+    private static final double HEAP_HEADROOM = 0.8;
+    private static final long MIB = 1_024 * 1_024;
+    private static final double GIB = 1_024.0 * MIB;
+
+    enum Design {
+        BLOCKING,   // A parked virtual thread per connection
+        SELECTOR;   // One selector thread and a connection record per connection
+
+        static Design fromString(final @NotNull String value) {
+            assert value != null;
+
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
+    private final List<Integer> connectionCounts;
+    private final List<Design> designs;
+    private final Path output;
+    private final List<Step> steps = new ArrayList<>();
+
+    FootprintProfiler() {
+        this(integers(System.getProperty(PREFIX + "connections"), List.of(1_000, 10_000, 100_000, 1_000_000)));
+    }
+
+    FootprintProfiler(final @NotNull List<Integer> connectionCounts) {
+        this(connectionCounts,
+             designs(System.getProperty(PREFIX + "designs", "blocking,selector")),
+             System.getProperty(PREFIX + "output") == null ? null : Path.of(System.getProperty(PREFIX + "output")));
+    }
+
+    // Writes the table as CSV to the output file too, when there is one
+
+    FootprintProfiler(final @NotNull List<Integer> connectionCounts, final @NotNull List<Design> designs, final Path output) {
+        super();
+
+        assert connectionCounts != null && !connectionCounts.isEmpty();
+        assert designs != null && !designs.isEmpty();
+
+        for (final var count : connectionCounts) {
+            if (count < 1)
+                throw new IllegalArgumentException("Connection counts must be positive: " + count);
+        }
+
+        this.connectionCounts = connectionCounts.stream().sorted().toList();
+        this.designs = List.copyOf(designs);
+        this.output = output;
+    }
+
+    // A design that runs out of memory, or would on the previous step's cost, is not tried at any larger count
+
+    @Override
+    public void run() {
+        this.logger.entry();
+
+        this.logger.info("Holding {} idle connection(s) with the {} design(s); max heap {} MiB",
+                this.connectionCounts,
+                this.designs,
+                Runtime.getRuntime().maxMemory() / MIB);
+
+        for (final var design : this.designs) {
+            Step previous = null;
+
+            for (final var connections : this.connectionCounts) {
+                final var step = this.measure(design, connections, previous);
+
+                if (step == null)
+                    break;
+
+                this.steps.add(step);
+
+                this.logger.info("{}", step);
+
+                if (step.exhausted)
+                    break;
+
+                previous = step;
+            }
+        }
+
+        this.report();
+
+        if (this.output != null)
+            this.writeCsv();
+
+        this.logger.exit();
+    }
+
+    // Returns null without opening any connections when they would not fit in memory
+
+    private Step measure(final @NotNull Design design, final @Positive int connections, final Step previous) {
+        this.logger.entry(design, connections, previous);
+
+        assert design != null;
+        assert connections > 0;
+
+        final var before = this.settle();
+
+        if (previous != null && !this.fits(previous, connections, before)) {
+            this.logger.exit();
+
+            return null;
+        }
+
+        final var step = new Step(design, connections);
+
+        try {
+            final Runnable release;
+
+            // Only the collections caused by opening the connections are counted as GC behaviour
+
+            final var monitor = new ResourceMonitor();
+
+            try {
+                final var startNanos = System.nanoTime();
+
+                release = design == Design.BLOCKING ? this.parkThreads(step) : this.holdRecords(step);
+
+                step.holdNanos = System.nanoTime() - startNanos;
+            } finally {
+                monitor.close();
+            }
+
+            step.gcPauses = monitor.getGcPauses();
+            step.gcPauseMillis = monitor.getGcPauseMillis();
+            step.maxGcPauseMillis = monitor.getMaxGcPauseMillis();
+
+            try {
+                final var fullGcStart = System.nanoTime();
+                final var after = ClassHistogram.take();
+
+                step.fullGcNanos = System.nanoTime() - fullGcStart;
+                step.heapBytes = after.liveBytes - before.liveBytes;
+                step.directBytes = directMemoryUsed() - before.directBytes;
+                step.stackChunks = after.stackChunks - before.stackChunks;
+                step.stackChunkBytes = after.stackChunkBytes - before.stackChunkBytes;
+            } finally {
+                release.run();
+            }
+        } catch (final InterruptedException ie) {
+            this.logger.catching(ie);
+
+            Thread.currentThread().interrupt(); // Restore the interrupt status
+        } catch (final OutOfMemoryError oome) {
+            step.exhausted = true;  // Thrown while measuring; whatever was held is released by now
+        }
+
+        this.logger.exit(step);
+
+        return step;
+    }
+
+    // A heap filled past the headroom would spend the step collecting, or fail it partway with an OutOfMemoryError
+
+    private boolean fits(final @NotNull Step previous, final @Positive int connections, final @NotNull ClassHistogram before) {
+        assert previous != null;
+        assert before != null;
+
+        final var heapNeeded = previous.heapPerConnection() * connections;
+        final var directNeeded = previous.directPerConnection() * connections;
+        final var heapAvailable = (long) ((Runtime.getRuntime().maxMemory() - before.liveBytes) * HEAP_HEADROOM);
+        final var directAvailable = maxDirectMemory() - before.directBytes;
+
+        if (heapNeeded <= heapAvailable && directNeeded <= directAvailable)
+            return true;
+
+        this.logger.info("{} with {} connection(s) would need {} MiB of heap and {} MiB of direct memory, with {} MiB and {} MiB available; stopping",
+                previous.design.name().toLowerCase(Locale.ROOT),
+                connections,
+                heapNeeded / MIB,
+                directNeeded / MIB,
+                heapAvailable / MIB,
+                directAvailable / MIB);
+
+        return false;
+    }
+
+    // Every thread builds the reader and writer Server.serveLines builds, then blocks reading its first line
+
+    private Runnable parkThreads(final @NotNull Step step) throws InterruptedException {
+        assert step != null;
+
+        final var release = new CountDownLatch(1);
+        final var parked = new CountDownLatch(step.connections);
+        final var failures = new LongAdder();
+        final var executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        var submitted = 0;
+
+        try {
+            for (; submitted < step.connections; submitted++) {
+                executor.submit(() -> this.idleConnection(new IdleInputStream(release), parked, failures));
+            }
+        } catch (final OutOfMemoryError oome) {
+            for (var i = submitted; i < step.connections; i++)
+                parked.countDown();
+
+            failures.add(step.connections - submitted);
+        }
+
+        parked.await();
+
+        step.held = step.connections - failures.sum();
+        step.exhausted = failures.sum() > 0;
+
+        return () -> {
+            release.countDown();
+            executor.close();   // Waits for every thread to read its end of stream
+        };
+    }
+
+    private void idleConnection(final @NotNull InputStream inputStream,
+                                final @NotNull CountDownLatch parked,
+                                final @NotNull LongAdder failures) {
+        final BufferedReader in;
+        final BufferedWriter out;
+
+        try {
+            in = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(OutputStream.nullOutputStream(), StandardCharsets.UTF_8));
+        } catch (final OutOfMemoryError oome) {
+            failures.increment();
+            parked.countDown();
+
+            return;
+        }
+
+        parked.countDown();
+
+        try (in; out) {
+            String inputLine;
+
+            while ((inputLine = in.readLine()) != null) {
+                out.write(inputLine);
+                out.write('\n');
+            }
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
+        }
+    }
+
+    private Runnable holdRecords(final @NotNull Step step) {
+        assert step != null;
+
+        final List<SelectorServer.Connection> connections = new ArrayList<>(step.connections);
+
+        try {
+            while (connections.size() < step.connections)
+                connections.add(new SelectorServer.Connection());
+        } catch (final OutOfMemoryError oome) {
+            step.exhausted = true;
+        }
+
+        step.held = connections.size();
+
+        return connections::clear;
+    }
+
+    // Collects until the previous step's garbage is gone, giving the cleaners time to free its direct buffers
+
+    private ClassHistogram settle() {
+        var histogram = ClassHistogram.take();
+
+        for (var i = 0; i < SETTLE_ATTEMPTS; i++) {
+            try {
+                Thread.sleep(SETTLE_MILLIS);
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt(); // Restore the interrupt status
+
+                break;
+            }
+
+            final var previous = histogram;
+
+            histogram = ClassHistogram.take();
+
+            if (previous.liveBytes - histogram.liveBytes < SETTLED_BYTES)
+                break;
+        }
+
+        histogram.directBytes = directMemoryUsed();
+
+        return histogram;
+    }
+
+    private void report() {
+        this.logger.entry();
+
+        if (this.logger.isInfoEnabled()) {
+            this.logger.info(String.format("%-8s %11s %11s %9s %11s %11s %11s %10s %7s %9s %9s %10s %11s",
+                    "design", "connections", "held", "open ms", "heap/conn", "direct/conn", "chunks",
+                    "chunk avg", "GCs", "GC ms", "max GC ms", "full GC ms", "conns/GiB"));
+
+            for (final var step : this.steps)
+                this.logger.info(String.format("%-8s %11d %11d %9d %9d B %9d B %11d %8d B %7d %9d %9d %10d %11d",
+                        step.design.name().toLowerCase(Locale.ROOT),
+                        step.connections,
+                        step.held,
+                        TimeUnit.NANOSECONDS.toMillis(step.holdNanos),
+                        step.heapPerConnection(),
+                        step.directPerConnection(),
+                        step.stackChunks,
+                        step.averageStackChunk(),
+                        step.gcPauses,
+                        step.gcPauseMillis,
+                        step.maxGcPauseMillis,
+                        TimeUnit.NANOSECONDS.toMillis(step.fullGcNanos),
+                        step.connectionsPerGib()));
+        }
+
+        this.logger.exit();
+    }
+
+    private void writeCsv() {
+        this.logger.entry();
+
+        final List<String> lines = new ArrayList<>();
+
+        lines.add("design,connections,held,exhausted,openMillis,heapBytesPerConnection,directBytesPerConnection,"
+                + "stackChunks,stackChunkBytesAverage,gcPauses,gcPauseMillis,maxGcPauseMillis,fullGcMillis,connectionsPerGib");
+
+        for (final var step : this.steps)
+            lines.add(String.join(",",
+                    step.design.name().toLowerCase(Locale.ROOT),
+                    Long.toString(step.connections),
+                    Long.toString(step.held),
+                    Boolean.toString(step.exhausted),
+                    Long.toString(TimeUnit.NANOSECONDS.toMillis(step.holdNanos)),
+                    Long.toString(step.heapPerConnection()),
+                    Long.toString(step.directPerConnection()),
+                    Long.toString(step.stackChunks),
+                    Long.toString(step.averageStackChunk()),
+                    Long.toString(step.gcPauses),
+                    Long.toString(step.gcPauseMillis),
+                    Long.toString(step.maxGcPauseMillis),
+                    Long.toString(TimeUnit.NANOSECONDS.toMillis(step.fullGcNanos)),
+                    Long.toString(step.connectionsPerGib())));
+
+        try {
+            Files.write(this.output, lines, StandardCharsets.UTF_8);
+
+            this.logger.info("Wrote the footprint table to {}", this.output);
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
+        }
+
+        this.logger.exit();
+    }
+
+    private static long directMemoryUsed() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+
+    // Zero, the default, means the maximum heap size
+
+    private static long maxDirectMemory() {
+        final var option = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class).getVMOption("MaxDirectMemorySize");
+        final var bytes = Long.parseLong(option.getValue());
+
+        return bytes > 0 ? bytes : Runtime.getRuntime().maxMemory();
+    }
+
+    private static List<Integer> integers(final String value, final @NotNull List<Integer> defaults) {
+        if (value == null || value.isBlank())
+            return defaults;
+
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .toList();
+    }
+
+    private static List<Design> designs(final @NotNull String value) {
+        return Arrays.stream(value.split(","))
+                .map(Design::fromString)
+                .toList();
+    }
+
+    // Stands in for a socket that never receives a byte until the step releases it
+
+    private static final class IdleInputStream extends InputStream {
+        private final CountDownLatch release;
+
+        private IdleInputStream(final @NotNull CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                this.release.await();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt(); // Restore the interrupt status
+
+                throw new InterruptedIOException(ie.getMessage());
+            }
+
+            return -1;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            return this.read();
+        }
+    }
+
+    // The live heap from the GC.class_histogram diagnostic command, which collects before it counts
+
+    private static final class ClassHistogram {
+        private long liveBytes;
+        private long stackChunks;
+        private long stackChunkBytes;
+        private long directBytes;
+
+        private static ClassHistogram take() {
+            final var histogram = new ClassHistogram();
+
+            final String text;
+
+            try {
+                text = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                        new ObjectName(DIAGNOSTIC_COMMAND),
+                        "gcClassHistogram",
+                        new Object[] {new String[0]},
+                        new String[] {String[].class.getName()});
+            } catch (final JMException jme) {
+                throw new IllegalStateException("The class histogram is not available", jme);
+            }
+
+            // "   1:   1000   160000  jdk.internal.vm.StackChunk (java.base@21)" and "Total   1000   160000"
+
+            for (final var line : text.lines().toList()) {
+                final var fields = line.trim().split("\\s+");
+
+                if (fields.length >= 4 && fields[3].equals(STACK_CHUNK_CLASS)) {
+                    histogram.stackChunks = Long.parseLong(fields[1]);
+                    histogram.stackChunkBytes = Long.parseLong(fields[2]);
+                } else if (fields.length == 3 && fields[0].equals("Total")) {
+                    histogram.liveBytes = Long.parseLong(fields[2]);
+                }
+            }
+
+            return histogram;
+        }
+    }
+
+    private static final class Step {
+        private final Design design;
+        private final int connections;
+
+        private long held;
+        private boolean exhausted;
+        private long holdNanos;
+        private long heapBytes;
+        private long directBytes;
+        private long stackChunks;
+        private long stackChunkBytes;
+        private long gcPauses;
+        private long gcPauseMillis;
+        private long maxGcPauseMillis;
+        private long fullGcNanos;
+
+        private Step(final @NotNull Design design, final int connections) {
+            this.design = design;
+            this.connections = connections;
+        }
+
+        private long heapPerConnection() {
+            return this.held == 0 ? 0 : this.heapBytes / this.held;
+        }
+
+        private long directPerConnection() {
+            return this.held == 0 ? 0 : this.directBytes / this.held;
+        }
+
+        private long averageStackChunk() {
+            return this.stackChunks <= 0 ? 0 : this.stackChunkBytes / this.stackChunks;
+        }
+
+        // How many more connections a gibibyte of heap and direct memory would hold, from this step's cost
+
+        private long connectionsPerGib() {
+            final var perConnection = this.heapPerConnection() + this.directPerConnection();
+
+            return perConnection <= 0 ? 0 : (long) (GIB / perConnection);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s with %d connection(s): held %d%s in %d ms, %d B heap and %d B direct per connection",
+                    this.design.name().toLowerCase(Locale.ROOT),
+                    this.connections,
+                    this.held,
+                    this.exhausted ? " before running out of memory" : "",
+                    TimeUnit.NANOSECONDS.toMillis(this.holdNanos),
+                    this.heapPerConnection(),
+                    this.directPerConnection());
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)FrameCodec.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import java.nio.ByteOrder;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+
+/*
+ * The binary framing of the client/server protocol. A
+ * client that opens a connection with the preamble byte
+ * sends frames rather than lines for the rest of it: a
+ * four byte big-endian payload length, a type byte and
+ * the payload. Command frames carry the words of the
+ * text protocol; data frames are opaque and are only
+ * ever echoed, so a payload is never decoded to a String.
+ */
+final class FrameCodec {
+    static final byte PREAMBLE = 0;     // No text line starts with NUL
+    static final byte COMMAND = 'C';
+    static final byte DATA = 'D';
+    static final int HEADER_SIZE = Integer.BYTES + 1;
+    static final int BUFFER_SIZE = 8_192;
+    static final int MAX_PAYLOAD = BUFFER_SIZE - HEADER_SIZE;  // A frame always fits in one buffer
+
+    static final byte[] EXIT = bytes("exit");
+    static final byte[] ECHO = bytes(Server.ECHO_COMMAND);
+    static final byte[] ECHO_ACKNOWLEDGEMENT = bytes(Server.ECHO_ACKNOWLEDGEMENT);
+
+    // The server rejects a connection before it knows the framing, so the busy line arrives where a header would
+
+    private static final byte[] BUSY_LINE = bytes(Server.BUSY_RESPONSE + '\n');
+
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private FrameCodec() {
+        super();
+    }
+
+    static int getLength(final @NotNull byte[] buffer, final @PositiveOrZero int index) {
+        return (int) INT.get(buffer, index);
+    }
+
+    static void checkLength(final int length) throws IOException {
+        if (length < 0 || length > MAX_PAYLOAD)
+            throw new IOException("Frame payload of " + length + " bytes is outside 0.." + MAX_PAYLOAD);
+    }
+
+    static byte[] bytes(final @NotNull String text) {
+        assert text != null;
+
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Buffers frames and writes them in as few socket writes as the caller's flushes allow
+
+    static final class Encoder implements Flushable {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+
+        private int position;
+
+        Encoder(final @NotNull OutputStream out) {
+            super();
+
+            assert out != null;
+
+            this.out = out;
+        }
+
+        void preamble() throws IOException {
+            this.reserve(1);
+            this.buffer[this.position++] = PREAMBLE;
+        }
+
+        void write(final byte type, final @NotNull byte[] payload) throws IOException {
+            this.write(type, payload, 0, payload.length);
+        }
+
+        void write(final byte type,
+                   final @NotNull byte[] payload,
+                   final @PositiveOrZero int offset,
+                   final @PositiveOrZero int length) throws IOException {
+            assert payload != null;
+
+            checkLength(length);
+
+            this.reserve(HEADER_SIZE + length);
+
+            INT.set(this.buffer, this.position, length);
+
+            this.buffer[this.position + Integer.BYTES] = type;
+
+            System.arraycopy(payload, offset, this.buffer, this.position + HEADER_SIZE, length);
+
+            this.position += HEADER_SIZE + length;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.drain();
+            this.out.flush();
+        }
+
+        private void reserve(final int bytes) throws IOException {
+            if (this.buffer.length - this.position < bytes)
+                this.drain();
+        }
+
+        private void drain() throws IOException {
+            if (this.position > 0) {
+                this.out.write(this.buffer, 0, this.position);
+
+                this.position = 0;
+            }
+        }
+    }
+
+    /*
+     * Reads frames into one reusable buffer. After next()
+     * returns true the frame's payload is the range from
+     * offset() to offset() + length() of buffer(), valid
+     * until the following call.
+     */
+    static final class Decoder {
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+
+        private int start;  // First unconsumed byte
+        private int end;    // One past the last byte read
+        private byte type;
+        private int offset;
+        private int length;
+
+        Decoder(final @NotNull InputStream in) {
+            super();
+
+            assert in != null;
+
+            this.in = in;
+        }
+
+        // Returns false when the peer closes the connection between frames
+
+        boolean next() throws IOException {
+            if (!this.fill(HEADER_SIZE))
+                return false;
+
+            final var payloadLength = getLength(this.buffer, this.start);
+
+            if (payloadLength > MAX_PAYLOAD && this.isBusyLine())
+                throw new IOException(Client.BUSY_MESSAGE);
+
+            checkLength(payloadLength);
+
+            if (!this.fill(HEADER_SIZE + payloadLength))
+                throw new EOFException("Connection closed inside a frame");
+
+            this.type = this.buffer[this.start + Integer.BYTES];
+            this.offset = this.start + HEADER_SIZE;
+            this.length = payloadLength;
+            this.start = this.offset + payloadLength;
+
+            return true;
+        }
+
+        // Like BufferedReader.ready(), true when another frame can be started without blocking
+
+        boolean ready() throws IOException {
+            return this.start < this.end || this.in.available() > 0;
+        }
+
+        boolean is(final byte type, final @NotNull byte[] payload) {
+            return this.type == type && Arrays.equals(this.buffer, this.offset, this.offset + this.length, payload, 0, payload.length);
+        }
+
+        byte type() {
+            return this.type;
+        }
+
+        byte[] buffer() {
+            return this.buffer;
+        }
+
+        int offset() {
+            return this.offset;
+        }
+
+        int length() {
+            return this.length;
+        }
+
+        private boolean isBusyLine() {
+            return Arrays.equals(this.buffer, this.start, this.start + BUSY_LINE.length, BUSY_LINE, 0, BUSY_LINE.length);
+        }
+
+        private boolean fill(final int needed) throws IOException {
+            if (this.end - this.start >= needed)
+                return true;
+
+            if (this.buffer.length - this.start < needed) {
+                System.arraycopy(this.buffer, this.start, this.buffer, 0, this.end - this.start);
+
+                this.end -= this.start;
+                this.start = 0;
+            }
+
+            while (this.end - this.start < needed) {
+                final var bytesRead = this.in.read(this.buffer, this.end, this.buffer.length - this.end);
+
+                if (bytesRead == -1) {
+                    if (this.end == this.start)
+                        return false;
+
+                    throw new EOFException("Connection closed inside a frame");
+                }
+
+                this.end += bytesRead;
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)Framing.java  0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Locale;
+
+enum Framing {
+    TEXT,       // Newline-delimited lines, easy to follow in a packet capture
+    BINARY;     // Length-prefixed frames; see FrameCodec
+
+    static final String PROPERTY = "net.jmp.demo.virtual.threads.framing";
+
+    static Framing fromSystemProperty() {
+        return fromString(System.getProperty(PROPERTY, TEXT.name()));
+    }
+
+    static Framing fromString(final @NotNull String value) {
+        assert value != null;
+
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
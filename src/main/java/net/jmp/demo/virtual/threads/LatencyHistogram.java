@@ -0,0 +1,131 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)LatencyHistogram.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.PositiveOrZero;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;    // About 1.5% precision
+    private static final int BUCKET_COUNT = 2 * SUB_BUCKET_COUNT + (Long.SIZE - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram() {
+        super();
+    }
+
+    void record(final @PositiveOrZero long nanos) {
+        final var value = Math.max(0, nanos);
+
+        this.counts.incrementAndGet(indexOf(value));
+        this.count.increment();
+        this.sum.add(value);
+        this.max.accumulateAndGet(value, Math::max);
+    }
+
+    long getCount() {
+        return this.count.sum();
+    }
+
+    long getMax() {
+        return this.max.get();
+    }
+
+    double getMean() {
+        final var total = this.count.sum();
+
+        return total == 0 ? 0 : (double) this.sum.sum() / total;
+    }
+
+    // Returns the upper bound of the bucket holding the given percentile
+
+    long getValueAtPercentile(final double percentile) {
+        assert percentile >= 0 && percentile <= 100;
+
+        final var total = this.count.sum();
+
+        if (total == 0)
+            return 0;
+
+        final var target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+
+        var seen = 0L;
+
+        for (var i = 0; i < BUCKET_COUNT; i++) {
+            seen += this.counts.get(i);
+
+            if (seen >= target)
+                return Math.min(highestValueAt(i), this.max.get());
+        }
+
+        return this.max.get();
+    }
+
+    String summary() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p999=%.1fus max=%.1fus",
+                this.getCount(),
+                this.getMean() / 1_000.0,
+                this.getValueAtPercentile(50) / 1_000.0,
+                this.getValueAtPercentile(90) / 1_000.0,
+                this.getValueAtPercentile(99) / 1_000.0,
+                this.getValueAtPercentile(99.9) / 1_000.0,
+                this.getMax() / 1_000.0);
+    }
+
+    private static int indexOf(final long value) {
+        if (value < 2 * SUB_BUCKET_COUNT)
+            return (int) value;
+
+        final var shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+
+        return 2 * SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    private static long highestValueAt(final int index) {
+        if (index < 2 * SUB_BUCKET_COUNT)
+            return index;
+
+        final var shift = (index - 2 * SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT + 1;
+        final var subBucket = (index - 2 * SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+        final var highest = ((long) (subBucket + 1) << shift) - 1;
+
+        return highest < 0 ? Long.MAX_VALUE : highest;   // The top bucket overflows
+    }
+}
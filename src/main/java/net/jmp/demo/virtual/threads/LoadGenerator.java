@@ -0,0 +1,221 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)LoadGenerator.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+
+import java.io.IOException;
+
+import java.util.List;
+import java.util.Optional;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.LoggerFactory;
+
+import org.slf4j.ext.XLogger;
+
+final class LoadGenerator implements Callable<Void> {
+    private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
+    private final List<Integer> ports;
+    private final LoadProfile profile;
+    private final Framing framing;
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+    private final LatencyHistogram sessionLatency = new LatencyHistogram();
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+    private final LongAdder connections = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final OpenLoopRecorder openLoop;
+
+    private volatile WorkloadResult result;
+
+    // Clients are spread round-robin across the ports
+
+    LoadGenerator(final @NotNull List<Integer> ports, final @NotNull LoadProfile profile, final @NotNull Framing framing) {
+        super();
+
+        assert ports != null && !ports.isEmpty();
+        assert profile != null;
+        assert framing != null;
+
+        this.ports = List.copyOf(ports);
+        this.profile = profile;
+        this.framing = framing;
+        this.openLoop = profile.isOpenLoop() ? new OpenLoopRecorder() : null;
+    }
+
+    @Override
+    public Void call() {
+        this.logger.entry();
+
+        this.logger.info("Generating load with {} framing: {}", this.framing, this.profile);
+
+        final var rampUpNanos = this.profile.rampUp().toNanos();
+        final var clients = this.profile.clients();
+        final var startNanos = System.nanoTime();
+        final var deadlineNanos = startNanos + rampUpNanos + this.profile.duration().toNanos();
+
+        try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var i = 0; i < clients; i++) {
+                final var client = i;
+                final var startAtNanos = startNanos + rampUpNanos * i / clients;
+                final var port = this.ports.get(i % this.ports.size());
+
+                if (this.profile.isOpenLoop())
+                    executor.submit(() -> this.runOpenLoopClient(port, client, startAtNanos, startNanos + rampUpNanos, deadlineNanos));
+                else
+                    executor.submit(() -> this.runClient(port, startAtNanos, deadlineNanos));
+            }
+        }  // executor.close() waits for every client to finish
+
+        final var elapsedNanos = System.nanoTime() - startNanos;
+
+        this.result = WorkloadResult.of("server",
+                this.messages.sum(),
+                this.failures.sum(),
+                elapsedNanos,
+                this.openLoop != null ? this.openLoop.getLatency() : this.profile.echo() ? this.requestLatency : this.sessionLatency);
+        this.report(elapsedNanos);
+
+        this.logger.exit();
+
+        return null;
+    }
+
+    // Latency is per request in echo mode and per session otherwise; empty until call() has completed
+
+    Optional<WorkloadResult> getResult() {
+        return Optional.ofNullable(this.result);
+    }
+
+    private void runClient(final int port, final long startAtNanos, final long deadlineNanos) {
+        Timing.parkUntil(startAtNanos);
+
+        final var client = new Client(port, ClientMode.PERSISTENT, this.profile.batchSize(), this.framing);
+
+        do {
+            this.runSession(client);
+        } while (this.profile.mode() == LoadProfile.Mode.FIXED_DURATION && System.nanoTime() < deadlineNanos);
+    }
+
+    // Clients connect during the ramp-up and all start sending when it ends; a fixed-duration
+    // run schedules sends until the deadline, a fixed-count run a set number from each client
+
+    private void runOpenLoopClient(final int port, final int client, final long startAtNanos, final long sendFromNanos, final long deadlineNanos) {
+        final var intervalNanos = this.profile.openLoopIntervalNanos();
+        final var firstSendNanos = sendFromNanos + this.profile.openLoopOffsetNanos(client);
+        final var messages = this.profile.mode() == LoadProfile.Mode.FIXED_COUNT
+                ? this.profile.messagesPerClient()
+                : (int) Math.min(Integer.MAX_VALUE, Math.ceilDiv(deadlineNanos - firstSendNanos, intervalNanos));
+
+        if (messages < 1)
+            return;
+
+        Timing.parkUntil(startAtNanos);
+
+        final var sessionStart = System.nanoTime();
+
+        try {
+            final var connectNanos = new Client(port, ClientMode.PERSISTENT, this.profile.batchSize(), this.framing)
+                    .openLoopSession(messages, Client::word, firstSendNanos, intervalNanos, this.openLoop);
+
+            this.sessionLatency.record(System.nanoTime() - sessionStart);
+            this.connectLatency.record(connectNanos);
+            this.connections.increment();
+            this.messages.add(messages);
+        } catch (final IOException ioe) {
+            this.failures.increment();
+
+            if (this.logger.isDebugEnabled())
+                this.logger.debug("Open-loop session failed: {}", ioe.getMessage());
+        }
+    }
+
+    private void runSession(final @NotNull Client client) {
+        final var sessionStart = System.nanoTime();
+
+        try {
+            final var connectNanos = this.profile.echo()
+                    ? client.echoSession(this.profile.messagesPerClient(), Client::word, this.profile.intervalNanos(), this.requestLatency)
+                    : client.session(this.profile.messagesPerClient());
+
+            this.sessionLatency.record(System.nanoTime() - sessionStart);
+            this.connectLatency.record(connectNanos);
+            this.connections.increment();
+            this.messages.add(this.profile.messagesPerClient());
+        } catch (final IOException ioe) {
+            this.failures.increment();
+
+            if (this.logger.isDebugEnabled())
+                this.logger.debug("Session failed: {}", ioe.getMessage());
+        }
+    }
+
+    private void report(final long elapsedNanos) {
+        this.logger.entry(elapsedNanos);
+
+        final var seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+
+        if (this.logger.isInfoEnabled()) {
+            this.logger.info("Clients: {}; connections: {}; failures: {}; messages: {}; elapsed: {} ms",
+                    this.profile.clients(),
+                    this.connections.sum(),
+                    this.failures.sum(),
+                    this.messages.sum(),
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+            this.logger.info("Throughput: {} messages/s; connection rate: {} connections/s",
+                    String.format("%.0f", this.messages.sum() / seconds),
+                    String.format("%.0f", this.connections.sum() / seconds));
+            this.logger.info("Connect latency: {}", this.connectLatency.summary());
+            this.logger.info("Session latency: {}", this.sessionLatency.summary());
+
+            if (this.openLoop != null) {
+                this.logger.info("Open-loop rate: {} messages/s intended, {} messages/s sent; {} sent, {} replies",
+                        this.profile.openLoopRate(),
+                        String.format("%.0f", this.openLoop.sendRate()),
+                        this.openLoop.getSent(),
+                        this.openLoop.getReceived());
+                this.logger.info("Send lag behind schedule: {}", this.openLoop.getSendLag().summary());
+                this.logger.info("Latency from intended send: {}", this.openLoop.getLatency().summary());
+                this.logger.info("Latency from actual send: {}", this.openLoop.getServiceTime().summary());
+            } else if (this.profile.echo()) {
+                this.logger.info("Request latency: {}", this.requestLatency.summary());
+            }
+        }
+
+        this.logger.exit();
+    }
+}
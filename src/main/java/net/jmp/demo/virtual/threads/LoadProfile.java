@@ -0,0 +1,159 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)LoadProfile.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+
+import java.time.Duration;
+
+import java.util.Locale;
+import java.util.Optional;
+
+import java.util.concurrent.TimeUnit;
+
+record LoadProfile(int clients,
+                   int messagesPerClient,
+                   int batchSize,
+                   Mode mode,
+                   Duration rampUp,
+                   Duration duration,
+                   boolean echo,
+                   int ratePerClient,
+                   int openLoopRate) {
+    static final int MAX_CLIENTS = 100_000;
+    static final int DEFAULT_MESSAGES = 100;
+    static final int DEFAULT_OPEN_LOOP_CLIENTS = 100;
+    static final Duration DEFAULT_DURATION = Duration.ofSeconds(10);
+
+    static final String PREFIX = "net.jmp.demo.virtual.threads.load.";
+
+    enum Mode {
+        FIXED_COUNT,    // Each client runs one session of messagesPerClient messages
+        FIXED_DURATION  // Each client runs sessions back to back until the duration elapses
+    }
+
+    LoadProfile {
+        if (clients < 1 || clients > MAX_CLIENTS)
+            throw new IllegalArgumentException("Clients must be between 1 and " + MAX_CLIENTS + ": " + clients);
+
+        if (messagesPerClient < 1)
+            throw new IllegalArgumentException("Messages per client must be positive: " + messagesPerClient);
+
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+
+        if (mode == null || rampUp == null || duration == null)
+            throw new IllegalArgumentException("Mode, ramp-up and duration are required");
+
+        if (rampUp.isNegative() || duration.isNegative())
+            throw new IllegalArgumentException("Ramp-up and duration must not be negative");
+
+        if (ratePerClient < 0)
+            throw new IllegalArgumentException("Rate per client must not be negative: " + ratePerClient);
+
+        if (openLoopRate < 0)
+            throw new IllegalArgumentException("Open-loop rate must not be negative: " + openLoopRate);
+
+        if (openLoopRate > 0 && (!echo || ratePerClient > 0))
+            throw new IllegalArgumentException("An open-loop rate needs echoing clients without a rate per client");
+    }
+
+    static LoadProfile fixedCount(final @Positive int clients, final @Positive int messagesPerClient) {
+        return new LoadProfile(clients, messagesPerClient, Client.DEFAULT_BATCH_SIZE, Mode.FIXED_COUNT, Duration.ZERO, Duration.ZERO, false, 0, 0);
+    }
+
+    static LoadProfile fixedDuration(final @Positive int clients, final @Positive int messagesPerClient, final @NotNull Duration duration) {
+        return new LoadProfile(clients, messagesPerClient, Client.DEFAULT_BATCH_SIZE, Mode.FIXED_DURATION, Duration.ZERO, duration, false, 0, 0);
+    }
+
+    LoadProfile withClients(final @Positive int clients) {
+        return new LoadProfile(clients, this.messagesPerClient, this.batchSize, this.mode, this.rampUp, this.duration, this.echo, this.ratePerClient, this.openLoopRate);
+    }
+
+    LoadProfile withRampUp(final @NotNull Duration rampUp) {
+        return new LoadProfile(this.clients, this.messagesPerClient, this.batchSize, this.mode, rampUp, this.duration, this.echo, this.ratePerClient, this.openLoopRate);
+    }
+
+    // Zero keeps each echoing client in a closed loop
+
+    LoadProfile withEcho(final @PositiveOrZero int ratePerClient) {
+        return new LoadProfile(this.clients, this.messagesPerClient, this.batchSize, this.mode, this.rampUp, this.duration, true, ratePerClient, 0);
+    }
+
+    // Echoing clients that send on a schedule across all of them, whether or not the replies keep up
+
+    LoadProfile withOpenLoopRate(final @Positive int openLoopRate) {
+        return new LoadProfile(this.clients, this.messagesPerClient, this.batchSize, this.mode, this.rampUp, this.duration, true, 0, openLoopRate);
+    }
+
+    long intervalNanos() {
+        return this.ratePerClient == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / this.ratePerClient;
+    }
+
+    boolean isOpenLoop() {
+        return this.openLoopRate > 0;
+    }
+
+    // Each client sends once per interval, offset from the others so the total arrives evenly
+
+    long openLoopIntervalNanos() {
+        return Math.max(1, TimeUnit.SECONDS.toNanos(1) * this.clients / this.openLoopRate);
+    }
+
+    long openLoopOffsetNanos(final @PositiveOrZero int client) {
+        return TimeUnit.SECONDS.toNanos(1) * client / this.openLoopRate;
+    }
+
+    // Present only when the clients property is set
+
+    static Optional<LoadProfile> fromSystemProperties() {
+        final var clients = System.getProperty(PREFIX + "clients");
+
+        if (clients == null)
+            return Optional.empty();
+
+        final var openLoopRate = Integer.getInteger(PREFIX + "openLoopRate", 0);
+
+        return Optional.of(new LoadProfile(
+                Integer.parseInt(clients),
+                Integer.getInteger(PREFIX + "messages", DEFAULT_MESSAGES),
+                Integer.getInteger(PREFIX + "batch", Client.DEFAULT_BATCH_SIZE),
+                Mode.valueOf(System.getProperty(PREFIX + "mode", Mode.FIXED_COUNT.name()).trim().toUpperCase(Locale.ROOT)),
+                Duration.ofMillis(Long.getLong(PREFIX + "rampUpMillis", 0)),
+                Duration.ofMillis(Long.getLong(PREFIX + "durationMillis", DEFAULT_DURATION.toMillis())),
+                Boolean.getBoolean(PREFIX + "echo") || openLoopRate > 0,
+                Integer.getInteger(PREFIX + "rate", 0),
+                openLoopRate
+        ));
+    }
+}
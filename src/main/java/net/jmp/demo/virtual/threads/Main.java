@@ -1,13 +1,14 @@
 package net.jmp.demo.virtual.threads;
 
 /*
+ * (#)Main.java 0.5.0   10/18/2026
  * (#)Main.java 0.4.0   03/23/2024
  * (#)Main.java 0.3.0   03/22/2024
  * (#)Main.java 0.2.0   03/17/2024
  * (#)Main.java 0.1.0   03/15/2024
  *
  * @author    Jonathan Parker
- * @version   0.4.0
+ * @version   0.5.0
  * @since     0.1.0
  *
  * MIT License
@@ -33,16 +34,33 @@ package net.jmp.demo.virtual.threads;
  * SOFTWARE.
  */
 
+import jakarta.validation.constraints.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+
+import java.util.List;
+import java.util.Optional;
+
 import org.slf4j.LoggerFactory;
 
 import org.slf4j.ext.XLogger;
 
 public final class Main {
     private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
-    private static final int PORT_FOR_CLIENT_SERVER = 8080;
+    private final RunOptions options;
 
-    private Main() {
+    private Main(final @NotNull RunOptions options) {
         super();
+
+        assert options != null;
+
+        this.options = options;
     }
 
     private void run() {
@@ -50,58 +68,287 @@ public final class Main {
 
         this.logger.info("Begin starting up...");
 
-        this.easy();
-        this.builder();
-        this.executor();
-        this.clientServer();
-        this.tasks();
+        if (CarrierMatrix.isCell()) {
+            this.carrierCell();
+        } else {
+            final var report = new RunReport(this.options);
+
+            for (final var kind : this.options.kindsToRun()) {
+                for (final var scenario : this.options.scenarios())
+                    this.measure(scenario, kind, report);
+            }
+
+            this.write(report);
+        }
+
+        if (CountingAsyncAppender.getDroppedEvents() > 0)
+            this.logger.warn("The asynchronous appender dropped {} log event(s)", CountingAsyncAppender.getDroppedEvents());
 
         this.logger.info("Done shutting down.");
 
         this.logger.exit();
     }
 
-    private void easy() {
-        this.logger.entry();
+    // Warmup runs are discarded so the measured ones see a compiled, warmed-up JVM
+
+    private void measure(final @NotNull Scenario scenario, final @NotNull ThreadKind kind, final @NotNull RunReport report) {
+        this.logger.entry(scenario, kind, report);
 
-        new Easy().run();
+        assert scenario != null;
+        assert kind != null;
+        assert report != null;
+
+        for (var i = 1; i <= this.options.warmup(); i++) {
+            this.logger.info("Warming up {} on {} threads ({} of {})", scenario.label(), kind, i, this.options.warmup());
+
+            this.run(scenario, kind);
+        }
+
+        for (var i = 1; i <= this.options.repetitions(); i++) {
+            this.logger.info("Running {} on {} threads ({} of {})", scenario.label(), kind, i, this.options.repetitions());
+
+            try (final var monitor = new ResourceMonitor()) {
+                final var startNanos = System.nanoTime();
+                final var results = this.run(scenario, kind);
+
+                report.add(scenario, kind, i, System.nanoTime() - startNanos, monitor, results);
+            }
+        }
 
         this.logger.exit();
     }
 
-    private void builder() {
-        this.logger.entry();
+    private List<WorkloadResult> run(final @NotNull Scenario scenario, final @NotNull ThreadKind kind) {
+        return switch (scenario) {
+            case EASY -> this.easy(kind);
+            case BUILDER -> this.builder(kind);
+            case EXECUTOR -> this.executor(kind);
+            case CLIENT_SERVER -> this.clientServer(kind).stream().toList();
+            case TASKS -> this.tasks(kind).stream().toList();
+            case MIXED -> this.mixed(kind);
+            case PINNING -> this.pinning(kind);
+            case CARRIERS -> this.carriers(kind);
+            case FOOTPRINT -> this.footprint();
+        };
+    }
+
+    private void write(final @NotNull RunReport report) {
+        this.logger.entry(report);
+
+        assert report != null;
+
+        try {
+            if (this.options.output() == null) {
+                final Writer writer = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+
+                report.write(writer);   // Flushed, but left open with System.out
+            } else {
+                try (final var writer = Files.newBufferedWriter(this.options.output(), StandardCharsets.UTF_8)) {
+                    report.write(writer);
+                }
 
-        new Builder().run();
+                this.logger.info("Wrote the {} report to {}", this.options.format(), this.options.output());
+            }
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
+        }
 
         this.logger.exit();
     }
 
-    private void executor() {
-        this.logger.entry();
+    private List<WorkloadResult> easy(final @NotNull ThreadKind kind) {
+        this.logger.entry(kind);
+
+        new Easy(kind).run();
+
+        this.logger.exit();
+
+        return List.of();
+    }
+
+    private List<WorkloadResult> builder(final @NotNull ThreadKind kind) {
+        this.logger.entry(kind);
+
+        new Builder(kind).run();
+
+        this.logger.exit();
+
+        return List.of();
+    }
+
+    private List<WorkloadResult> executor(final @NotNull ThreadKind kind) {
+        this.logger.entry(kind);
 
-        new Executor().run();
+        new Executor(kind).run();
 
         this.logger.exit();
+
+        return List.of();
     }
 
-    private void clientServer() {
+    // A concurrency option turns the exchange into a load run with that many clients; a rate option
+    // into an open-loop one, for the load profile's duration or ten seconds without one
+
+    private Optional<WorkloadResult> clientServer(final @NotNull ThreadKind kind) {
+        this.logger.entry(kind);
+
+        var loadProfile = LoadProfile.fromSystemProperties();
+
+        if (this.options.concurrency() > 0) {
+            loadProfile = Optional.of(loadProfile
+                    .map(profile -> profile.withClients(this.options.concurrency()))
+                    .orElseGet(() -> LoadProfile.fixedCount(this.options.concurrency(), LoadProfile.DEFAULT_MESSAGES)));
+        }
+
+        if (this.options.rate() > 0) {
+            loadProfile = Optional.of(loadProfile
+                    .orElseGet(() -> LoadProfile.fixedDuration(LoadProfile.DEFAULT_OPEN_LOOP_CLIENTS, LoadProfile.DEFAULT_MESSAGES, LoadProfile.DEFAULT_DURATION))
+                    .withOpenLoopRate(this.options.rate()));
+        }
+
+        final var clientServer = new ClientServer(
+                this.options.port(),
+                ServerMode.fromSystemProperty(),
+                ClientMode.fromSystemProperty(),
+                Framing.fromSystemProperty(),
+                loadProfile.orElse(null),
+                Boolean.getBoolean(ClientServer.STRUCTURED_PROPERTY),
+                kind
+        );
+
+        clientServer.run();
+
+        final var result = clientServer.getLoadResult();
+
+        this.logger.exit(result);
+
+        return result;
+    }
+
+    // Only a kind named on the command line overrides the tasks kind property
+
+    private Optional<WorkloadResult> tasks(final @NotNull ThreadKind kind) {
+        this.logger.entry(kind);
+
+        var profile = TaskProfile.fromSystemProperties();
+
+        if (!this.options.kinds().isEmpty())
+            profile = profile.withThreadKind(kind);
+
+        if (this.options.concurrency() > 0)
+            profile = profile.withTasks(this.options.concurrency());
+
+        final var tasks = new Tasks(profile, OutputMode.fromSystemProperty());
+
+        tasks.run();
+
+        final var result = tasks.getResult();
+
+        this.logger.exit(result);
+
+        return result;
+    }
+
+    private List<WorkloadResult> mixed(final @NotNull ThreadKind kind) {
+        this.logger.entry(kind);
+
+        var profile = MixedProfile.fromSystemProperties();
+
+        if (this.options.concurrency() > 0)
+            profile = profile.withTasks(this.options.concurrency());
+
+        final var mixed = new MixedWorkload(profile, kind);
+
+        mixed.run();
+
+        final var results = mixed.getResults();
+
+        this.logger.exit(results);
+
+        return results;
+    }
+
+    private List<WorkloadResult> pinning(final @NotNull ThreadKind kind) {
+        this.logger.entry(kind);
+
+        final var profiler = new PinningProfiler();
+
+        profiler.profile("tasks", () -> this.tasks(kind));
+        profiler.profile("clientServer", () -> this.clientServer(kind));
+        profiler.profile("executor", () -> this.executor(kind));
+
+        this.logger.exit();
+
+        return List.of();
+    }
+
+    private List<WorkloadResult> carriers(final @NotNull ThreadKind kind) {
+        this.logger.entry(kind);
+
+        new CarrierMatrix(this.options.cellArguments(kind)).run();
+
+        this.logger.exit();
+
+        return List.of();
+    }
+
+    // Always virtual threads; a million platform threads is the capacity limit being planned around
+
+    private List<WorkloadResult> footprint() {
         this.logger.entry();
 
-        new ClientServer(PORT_FOR_CLIENT_SERVER).run();
+        final var profiler = this.options.concurrency() > 0
+                ? new FootprintProfiler(List.of(this.options.concurrency()))
+                : new FootprintProfiler();
+
+        profiler.run();
 
         this.logger.exit();
+
+        return List.of();
     }
 
-    private void tasks() {
+    // One cell of the carrier matrix, run in a JVM forked by the matrix
+
+    private void carrierCell() {
         this.logger.entry();
 
-        new Tasks().run();
+        final var workload = CarrierMatrix.Workload.fromSystemProperty();
+        final var kind = this.options.kindsToRun().getFirst();
+        final var result = switch (workload) {
+            case TASKS -> this.tasks(kind);
+            case SERVER -> this.clientServer(kind);
+        };
+
+        if (result.isPresent()) {
+            try {
+                CarrierMatrix.writeResult(result.get());
+            } catch (final IOException ioe) {
+                this.logger.catching(ioe);
+            }
+        } else {
+            this.logger.error("Workload {} produced no result", workload);
+        }
 
         this.logger.exit();
     }
 
     public static void main(final String[] arguments) {
-        new Main().run();
+        final RunOptions options;
+
+        try {
+            options = RunOptions.parse(arguments);
+        } catch (final IllegalArgumentException iae) {
+            System.err.println(iae.getMessage());
+            System.err.println(RunOptions.USAGE);
+            System.exit(2);
+
+            return;
+        }
+
+        if (options.help())
+            System.out.println(RunOptions.USAGE);
+        else
+            new Main(options).run();
     }
 }
@@ -0,0 +1,119 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)MixedProfile.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.time.Duration;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+record MixedProfile(int tasks,
+                    double cpuFraction,
+                    int cpuIterations,
+                    Duration ioSleep,
+                    List<Placement> placements,
+                    int cpuPoolSize) {
+    static final String PREFIX = "net.jmp.demo.virtual.threads.mixed.";
+
+    enum Placement {
+        SHARED, // CPU and I/O tasks share the virtual thread executor and its carriers
+        SPLIT;  // CPU tasks run on a bounded platform pool, leaving the carriers to I/O tasks
+
+        static Placement fromString(final @NotNull String value) {
+            assert value != null;
+
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    MixedProfile {
+        if (tasks < 1)
+            throw new IllegalArgumentException("Tasks must be positive: " + tasks);
+
+        if (cpuFraction < 0 || cpuFraction > 1)
+            throw new IllegalArgumentException("CPU fraction must be between 0 and 1: " + cpuFraction);
+
+        if (cpuIterations < 0)
+            throw new IllegalArgumentException("CPU iterations must not be negative: " + cpuIterations);
+
+        if (ioSleep == null || ioSleep.isNegative())
+            throw new IllegalArgumentException("I/O sleep is required and must not be negative");
+
+        if (placements == null || placements.isEmpty())
+            throw new IllegalArgumentException("At least one placement is required");
+
+        if (cpuPoolSize < 1)
+            throw new IllegalArgumentException("CPU pool size must be positive: " + cpuPoolSize);
+
+        placements = List.copyOf(placements);
+    }
+
+    // A quarter of the tasks spin for a few milliseconds each; the rest block for 10 ms
+
+    static MixedProfile defaults() {
+        return new MixedProfile(10_000,
+                0.25,
+                5_000_000,
+                Duration.ofMillis(10),
+                List.of(Placement.SHARED, Placement.SPLIT),
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    static MixedProfile fromSystemProperties() {
+        final var defaults = defaults();
+        final var placements = System.getProperty(PREFIX + "placements");
+
+        return new MixedProfile(
+                Integer.getInteger(PREFIX + "tasks", defaults.tasks()),
+                Double.parseDouble(System.getProperty(PREFIX + "cpuFraction", Double.toString(defaults.cpuFraction()))),
+                Integer.getInteger(PREFIX + "cpuIterations", defaults.cpuIterations()),
+                Duration.ofMillis(Long.getLong(PREFIX + "ioSleepMillis", defaults.ioSleep().toMillis())),
+                placements == null
+                        ? defaults.placements()
+                        : Arrays.stream(placements.split(",")).map(Placement::fromString).toList(),
+                Integer.getInteger(PREFIX + "cpuPoolSize", defaults.cpuPoolSize())
+        );
+    }
+
+    MixedProfile withTasks(final @Positive int tasks) {
+        return new MixedProfile(tasks, this.cpuFraction, this.cpuIterations, this.ioSleep, this.placements, this.cpuPoolSize);
+    }
+
+    // Spreads the CPU tasks evenly through the submission order rather than bunching them
+
+    boolean isCpuTask(final int task) {
+        return (long) ((task + 1) * this.cpuFraction) > (long) (task * this.cpuFraction);
+    }
+}
@@ -0,0 +1,249 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)MixedWorkload.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.LoggerFactory;
+
+import org.slf4j.ext.XLogger;
+
+/*
+ * Runs CPU-bound and I/O-bound tasks side by side to show
+ * when the CPU tasks starve the I/O tasks of carriers. A
+ * virtual thread spinning on arithmetic never parks, so
+ * it holds its carrier until it finishes; an I/O task
+ * whose sleep has ended must then wait for a free carrier
+ * before it can run again. That wait is measured as the
+ * time from the end of the sleep to the task resuming,
+ * once with every task sharing the virtual thread
+ * executor and once with the CPU tasks moved to a bounded
+ * platform pool.
+ */
+final class MixedWorkload implements Runnable {
+    static final String PROPERTY = "net.jmp.demo.virtual.threads.mixed";
+
+    private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
+    private final MixedProfile profile;
+    private final ThreadKind threadKind;
+    private final List<Run> runs = new ArrayList<>();
+    private final LongAdder checksum = new LongAdder();
+
+    MixedWorkload() {
+        this(MixedProfile.fromSystemProperties(), ThreadKind.fromSystemProperty());
+    }
+
+    // The thread kind runs the I/O tasks, and the CPU tasks too when they are shared
+
+    MixedWorkload(final @NotNull MixedProfile profile, final @NotNull ThreadKind threadKind) {
+        super();
+
+        assert profile != null;
+        assert threadKind != null;
+
+        this.profile = profile;
+        this.threadKind = threadKind;
+    }
+
+    @Override
+    public void run() {
+        this.logger.entry();
+
+        this.logger.info("Mixing {} tasks on {} threads, {}% spinning for {} iterations and the rest blocking for {} ms, with {} carriers",
+                this.profile.tasks(),
+                this.threadKind,
+                Math.round(this.profile.cpuFraction() * 100),
+                this.profile.cpuIterations(),
+                this.profile.ioSleep().toMillis(),
+                System.getProperty("jdk.virtualThreadScheduler.parallelism",
+                        Integer.toString(Runtime.getRuntime().availableProcessors())));
+
+        for (final var placement : this.profile.placements())
+            this.runs.add(this.run(placement));
+
+        this.report();
+
+        this.logger.exit();
+    }
+
+    // One result per placement, named mixed-shared or mixed-split, with the I/O task latency; empty until run() has completed
+
+    List<WorkloadResult> getResults() {
+        return this.runs.stream().map(Run::result).toList();
+    }
+
+    private Run run(final @NotNull MixedProfile.Placement placement) {
+        this.logger.entry(placement);
+
+        assert placement != null;
+
+        final var run = new Run(placement);
+        final var cpuPool = placement == MixedProfile.Placement.SPLIT
+                ? Executors.newFixedThreadPool(this.profile.cpuPoolSize(), Thread.ofPlatform().name("mixed-cpu-", 0).factory())
+                : null;
+        final var startNanos = System.nanoTime();
+
+        try {
+            try (final var executor = this.threadKind.newExecutor()) {
+                final ExecutorService cpuExecutor = cpuPool != null ? cpuPool : executor;
+
+                for (var i = 0; i < this.profile.tasks(); i++) {
+                    final var task = i;
+                    final var submitNanos = System.nanoTime();
+
+                    if (this.profile.isCpuTask(task))
+                        cpuExecutor.submit(() -> this.spin(task, submitNanos, run));
+                    else
+                        executor.submit(() -> this.block(submitNanos, run));
+                }
+            }  // executor.close() waits for the I/O tasks, and for the CPU tasks when they share it
+        } finally {
+            if (cpuPool != null)
+                cpuPool.close();
+        }
+
+        run.elapsedNanos = System.nanoTime() - startNanos;
+
+        this.logger.exit(run);
+
+        return run;
+    }
+
+    private void spin(final int task, final long submitNanos, final @NotNull Run run) {
+        var value = (long) task;
+
+        for (var i = 0; i < this.profile.cpuIterations(); i++)
+            value = value * 6_364_136_223_846_793_005L + 1_442_695_040_888_963_407L;
+
+        this.checksum.add(value);   // Keeps the loop from being optimized away
+
+        run.cpuLatency.record(System.nanoTime() - submitNanos);
+    }
+
+    private void block(final long submitNanos, final @NotNull Run run) {
+        final var startNanos = System.nanoTime();
+
+        run.ioStartDelay.record(startNanos - submitNanos);
+
+        try {
+            Thread.sleep(this.profile.ioSleep());   // Stands in for a blocking read that unmounts the virtual thread
+        } catch (final InterruptedException ie) {
+            run.failures.increment();
+
+            Thread.currentThread().interrupt(); // Restore the interrupt status
+
+            return;
+        }
+
+        final var resumedNanos = System.nanoTime();
+
+        run.ioWakeDelay.record(Math.max(0, resumedNanos - startNanos - this.profile.ioSleep().toNanos()));
+        run.ioLatency.record(resumedNanos - submitNanos);
+    }
+
+    private void report() {
+        this.logger.entry();
+
+        if (this.logger.isInfoEnabled()) {
+            this.logger.info(String.format("%-9s %10s %14s %14s %14s %14s %14s",
+                    "placement", "elapsed ms", "io start p99", "io wake p50", "io wake p99", "io wake max", "cpu p99"));
+
+            for (final var run : this.runs) {
+                this.logger.info(String.format("%-9s %10d %11.2f ms %11.2f ms %11.2f ms %11.2f ms %11.2f ms",
+                        run.placement.name().toLowerCase(Locale.ROOT),
+                        TimeUnit.NANOSECONDS.toMillis(run.elapsedNanos),
+                        millis(run.ioStartDelay.getValueAtPercentile(99)),
+                        millis(run.ioWakeDelay.getValueAtPercentile(50)),
+                        millis(run.ioWakeDelay.getValueAtPercentile(99)),
+                        millis(run.ioWakeDelay.getMax()),
+                        millis(run.cpuLatency.getValueAtPercentile(99))));
+            }
+
+            final var shared = this.find(MixedProfile.Placement.SHARED);
+            final var split = this.find(MixedProfile.Placement.SPLIT);
+
+            if (shared != null && split != null) {
+                this.logger.info("Moving the CPU tasks to a pool of {} platform threads took the I/O wake-up p99 from {} ms to {} ms",
+                        this.profile.cpuPoolSize(),
+                        String.format("%.2f", millis(shared.ioWakeDelay.getValueAtPercentile(99))),
+                        String.format("%.2f", millis(split.ioWakeDelay.getValueAtPercentile(99))));
+            }
+        }
+
+        this.logger.exit();
+    }
+
+    private Run find(final @NotNull MixedProfile.Placement placement) {
+        return this.runs.stream().filter(run -> run.placement == placement).findFirst().orElse(null);
+    }
+
+    private static double millis(final long nanos) {
+        return nanos / 1e6;
+    }
+
+    private final class Run {
+        private final MixedProfile.Placement placement;
+        private final LatencyHistogram ioStartDelay = new LatencyHistogram();   // Submission until the I/O task first runs
+        private final LatencyHistogram ioWakeDelay = new LatencyHistogram();    // End of the sleep until the I/O task runs again
+        private final LatencyHistogram ioLatency = new LatencyHistogram();
+        private final LatencyHistogram cpuLatency = new LatencyHistogram();
+        private final LongAdder failures = new LongAdder();
+
+        private long elapsedNanos;
+
+        private Run(final @NotNull MixedProfile.Placement placement) {
+            this.placement = placement;
+        }
+
+        private WorkloadResult result() {
+            return WorkloadResult.of("mixed-" + this.placement.name().toLowerCase(Locale.ROOT),
+                    MixedWorkload.this.profile.tasks(),
+                    this.failures.sum(),
+                    this.elapsedNanos,
+                    this.ioLatency);
+        }
+
+        @Override
+        public String toString() {
+            return this.placement + " in " + TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos) + " ms";
+        }
+    }
+}
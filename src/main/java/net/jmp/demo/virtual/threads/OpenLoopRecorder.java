@@ -0,0 +1,104 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)OpenLoopRecorder.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * What open-loop clients record about each message. A
+ * message has an intended send time from the schedule,
+ * an actual one when its sender got to it, and the time
+ * its reply arrived. Latency is measured from the intended
+ * time, so a server that falls behind is charged for the
+ * queue it builds; the send lag shows how far the senders
+ * themselves kept to the schedule.
+ */
+final class OpenLoopRecorder {
+    private final LatencyHistogram sendLag = new LatencyHistogram();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final AtomicLong firstIntendedNanos = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong lastSentNanos = new AtomicLong(Long.MIN_VALUE);
+
+    OpenLoopRecorder() {
+        super();
+    }
+
+    void sent(final long intendedNanos, final long actualNanos) {
+        this.sendLag.record(actualNanos - intendedNanos);
+        this.sent.increment();
+        this.firstIntendedNanos.accumulateAndGet(intendedNanos, Math::min);
+        this.lastSentNanos.accumulateAndGet(actualNanos, Math::max);
+    }
+
+    void received(final long intendedNanos, final long actualNanos, final long receivedNanos) {
+        this.latency.record(receivedNanos - intendedNanos);
+        this.serviceTime.record(receivedNanos - actualNanos);
+        this.received.increment();
+    }
+
+    LatencyHistogram getSendLag() {
+        return this.sendLag;
+    }
+
+    // From the intended send time to the reply
+
+    LatencyHistogram getLatency() {
+        return this.latency;
+    }
+
+    // From the actual send time to the reply, the latency a closed-loop client would report
+
+    LatencyHistogram getServiceTime() {
+        return this.serviceTime;
+    }
+
+    long getSent() {
+        return this.sent.sum();
+    }
+
+    long getReceived() {
+        return this.received.sum();
+    }
+
+    // Messages sent per second from the first intended send time to the last actual one
+
+    double sendRate() {
+        final var spanNanos = this.lastSentNanos.get() - this.firstIntendedNanos.get();
+
+        return spanNanos <= 0 ? 0 : this.sent.sum() / (spanNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,205 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)PinningProfiler.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.time.Duration;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jdk.jfr.Recording;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.slf4j.LoggerFactory;
+
+import org.slf4j.ext.XLogger;
+
+final class PinningProfiler {
+    static final String PROPERTY = "net.jmp.demo.virtual.threads.pinning";
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = PinningProfiler.class.getPackageName() + ".";
+    private static final int TOP_SITES = 5;
+
+    // Frames that only show how the virtual thread parked, not why it was pinned
+
+    private static final Set<String> PARKING_CLASSES = Set.of(
+            "java.lang.VirtualThread",
+            "java.lang.System$2",
+            "jdk.internal.misc.Unsafe",
+            "jdk.internal.misc.VirtualThreads",
+            "java.util.concurrent.locks.LockSupport"
+    );
+
+    private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
+
+    PinningProfiler() {
+        super();
+    }
+
+    void profile(final @NotNull String scenario, final @NotNull Runnable runnable) {
+        this.logger.entry(scenario, runnable);
+
+        assert scenario != null;
+        assert runnable != null;
+
+        try (final var recording = new Recording()) {
+            recording.enable(PINNED_EVENT).withThreshold(Duration.ZERO).withStackTrace();
+            recording.setName(scenario);
+            recording.start();
+
+            try {
+                runnable.run();
+            } finally {
+                recording.stop();
+            }
+
+            final var file = Files.createTempFile(scenario + "-", ".jfr");
+
+            try {
+                recording.dump(file);
+
+                this.summarize(scenario, file);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
+            this.logger.error("Unable to record pinning for scenario {}", scenario);
+        }
+
+        this.logger.exit();
+    }
+
+    private void summarize(final @NotNull String scenario, final @NotNull Path file) throws IOException {
+        this.logger.entry(scenario, file);
+
+        assert scenario != null;
+        assert file != null;
+
+        final var histogram = new LatencyHistogram();
+        final Map<String, Site> sites = new HashMap<>();
+
+        for (final var event : RecordingFile.readAllEvents(file)) {
+            if (!event.getEventType().getName().equals(PINNED_EVENT))
+                continue;
+
+            final var nanos = event.getDuration().toNanos();
+
+            histogram.record(nanos);
+            sites.computeIfAbsent(siteOf(event), Site::new).add(nanos);
+        }
+
+        if (histogram.getCount() == 0) {
+            this.logger.info("Scenario {}: no pinned virtual threads", scenario);
+        } else {
+            this.logger.info("Scenario {}: pinned {}", scenario, histogram.summary());
+
+            sites.values().stream()
+                    .sorted(Comparator.comparingLong(Site::totalNanos).reversed())
+                    .limit(TOP_SITES)
+                    .forEach(site -> this.logger.info("    {} pin(s), {} us total at {}",
+                            site.count,
+                            site.totalNanos / 1_000,
+                            site.frames));
+        }
+
+        this.logger.exit();
+    }
+
+    // The first frame past the parking machinery and, when different, the nearest application frame
+
+    private static String siteOf(final @NotNull RecordedEvent event) {
+        final var stackTrace = event.getStackTrace();
+
+        if (stackTrace == null)
+            return "<no stack trace>";
+
+        final List<RecordedFrame> frames = stackTrace.getFrames();
+
+        String top = null;
+
+        for (final var frame : frames) {
+            if (!frame.isJavaFrame())
+                continue;
+
+            final var className = frame.getMethod().getType().getName();
+
+            if (top == null && !PARKING_CLASSES.contains(className))
+                top = format(frame);
+
+            if (top != null && className.startsWith(APPLICATION_PACKAGE)) {
+                final var application = format(frame);
+
+                return application.equals(top) ? top : top + " <- " + application;
+            }
+        }
+
+        return top == null ? "<parking frames only>" : top;
+    }
+
+    private static String format(final @NotNull RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+    private static final class Site {
+        private final String frames;
+
+        private long count;
+        private long totalNanos;
+
+        private Site(final @NotNull String frames) {
+            this.frames = frames;
+        }
+
+        private void add(final long nanos) {
+            this.count++;
+            this.totalNanos += nanos;
+        }
+
+        private long totalNanos() {
+            return this.totalNanos;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)ResourceMonitor.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import java.util.stream.Collectors;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+import javax.management.openmbean.CompositeData;
+
+import org.slf4j.LoggerFactory;
+
+import org.slf4j.ext.XLogger;
+
+final class ResourceMonitor implements AutoCloseable {
+    private static final long SAMPLE_INTERVAL_MILLIS = 10;
+
+    private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
+    private final Set<String> heapPools;
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final NotificationListener listener = this::handleNotification;
+    private final AtomicLong peakHeapBytes = new AtomicLong();
+    private final AtomicInteger peakPlatformThreads = new AtomicInteger();
+    private final AtomicLong maxPauseMillis = new AtomicLong();
+    private final LongAdder pauses = new LongAdder();
+    private final LongAdder pauseMillis = new LongAdder();
+    private final Thread sampler;
+
+    private volatile boolean running = true;
+
+    ResourceMonitor() {
+        super();
+
+        this.heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .map(MemoryPoolMXBean::getName)
+                .collect(Collectors.toUnmodifiableSet());
+
+        // The JVM's own peak thread count is global, so resetting it would corrupt a monitor this one is nested in
+
+        this.peakPlatformThreads.set(ManagementFactory.getThreadMXBean().getThreadCount());
+
+        for (final var collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // ZGC and Shenandoah report their concurrent cycles separately from their pauses
+
+            if (collector instanceof NotificationEmitter emitter && !collector.getName().endsWith("Cycles")) {
+                emitter.addNotificationListener(this.listener, null, null);
+
+                this.emitters.add(emitter);
+            }
+        }
+
+        this.sampler = Thread.ofPlatform().name("resource-monitor").daemon().start(this::sample);
+    }
+
+    long getPeakHeapBytes() {
+        return this.peakHeapBytes.get();
+    }
+
+    int getPeakPlatformThreads() {
+        return this.peakPlatformThreads.get();
+    }
+
+    long getGcPauses() {
+        return this.pauses.sum();
+    }
+
+    long getGcPauseMillis() {
+        return this.pauseMillis.sum();
+    }
+
+    long getMaxGcPauseMillis() {
+        return this.maxPauseMillis.get();
+    }
+
+    String summary() {
+        return String.format("peak heap=%d MiB peak platform threads=%d GC pauses=%d total=%d ms max=%d ms",
+                this.getPeakHeapBytes() / (1_024 * 1_024),
+                this.getPeakPlatformThreads(),
+                this.getGcPauses(),
+                this.getGcPauseMillis(),
+                this.getMaxGcPauseMillis());
+    }
+
+    @Override
+    public void close() {
+        this.logger.entry();
+
+        this.running = false;
+
+        try {
+            this.sampler.join();
+        } catch (final InterruptedException ie) {
+            this.logger.catching(ie);
+
+            Thread.currentThread().interrupt(); // Restore the interrupt status
+        }
+
+        // A run shorter than the sampling interval would otherwise report no heap at all
+
+        this.peakHeapBytes.accumulateAndGet(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max);
+        this.peakPlatformThreads.accumulateAndGet(ManagementFactory.getThreadMXBean().getThreadCount(), Math::max);
+
+        for (final var emitter : this.emitters) {
+            try {
+                emitter.removeNotificationListener(this.listener);
+            } catch (final ListenerNotFoundException lnfe) {
+                this.logger.catching(lnfe);
+            }
+        }
+
+        this.logger.exit();
+    }
+
+    private void sample() {
+        final var memory = ManagementFactory.getMemoryMXBean();
+        final var threads = ManagementFactory.getThreadMXBean();
+
+        while (this.running) {
+            this.peakHeapBytes.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+            this.peakPlatformThreads.accumulateAndGet(threads.getThreadCount(), Math::max);
+
+            try {
+                Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt(); // Restore the interrupt status
+
+                return;
+            }
+        }
+    }
+
+    // The heap just before each collection is its local peak, which sampling alone would miss
+
+    private void handleNotification(final Notification notification, final Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()))
+            return;
+
+        final var gcInfo = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()).getGcInfo();
+
+        final var heapBeforeGc = gcInfo.getMemoryUsageBeforeGc().entrySet().stream()
+                .filter(entry -> this.heapPools.contains(entry.getKey()))
+                .mapToLong(entry -> entry.getValue().getUsed())
+                .sum();
+
+        this.peakHeapBytes.accumulateAndGet(heapBeforeGc, Math::max);
+        this.pauses.increment();
+        this.pauseMillis.add(gcInfo.getDuration());
+        this.maxPauseMillis.accumulateAndGet(gcInfo.getDuration(), Math::max);
+    }
+}
@@ -0,0 +1,221 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)RunOptions.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * The command line of Main. Every option is optional; a
+ * run with no arguments selects its scenarios from the
+ * system properties, as earlier versions did, and runs
+ * each once. Naming more than one thread kind repeats
+ * every scenario on each kind and compares them.
+ */
+record RunOptions(List<Scenario> scenarios,
+                  List<ThreadKind> kinds,
+                  int repetitions,
+                  int warmup,
+                  int port,
+                  int concurrency,
+                  int rate,
+                  ReportFormat format,
+                  Path output,
+                  boolean help) {
+    static final int DEFAULT_PORT = 8080;
+
+    private static final Set<String> VALUED_OPTIONS = Set.of("scenarios", "kinds", "repetitions", "warmup", "port", "concurrency", "rate", "format", "output");
+
+    static final String USAGE = """
+            Usage: Main [options]
+              --scenarios=LIST    comma-separated: easy, builder, executor, client-server, tasks,
+                                  mixed, pinning, carriers, footprint (default: easy through tasks)
+              --repetitions=N     measured runs of each scenario (default: 1)
+              --warmup=N          unmeasured runs of each scenario before the measured ones (default: 0)
+              --port=N            the client/server port (default: 8080)
+              --kinds=LIST        comma-separated thread kinds to run every scenario on: virtual,
+                                  platform, fixed, fork_join (default: the kind system property)
+              --concurrency=N     tasks for tasks and mixed, load clients for client-server,
+                                  idle connections for footprint (default: each scenario's own)
+              --rate=N            send N messages/s across the client-server load clients on an
+                                  open-loop schedule, whatever the replies do (default: closed loop)
+              --format=FORMAT     text, json or csv (default: text)
+              --output=FILE       write the report to FILE instead of standard output
+              --help              print this message""";
+
+    RunOptions {
+        if (scenarios == null || scenarios.isEmpty())
+            throw new IllegalArgumentException("At least one scenario is required");
+
+        if (repetitions < 1)
+            throw new IllegalArgumentException("Repetitions must be positive: " + repetitions);
+
+        if (warmup < 0)
+            throw new IllegalArgumentException("Warmup must not be negative: " + warmup);
+
+        if (port < 1 || port > 65_535)
+            throw new IllegalArgumentException("The port must be between 1 and 65535: " + port);
+
+        if (concurrency < 0)
+            throw new IllegalArgumentException("Concurrency must not be negative: " + concurrency);
+
+        if (rate < 0)
+            throw new IllegalArgumentException("Rate must not be negative: " + rate);
+
+        if (format == null)
+            throw new IllegalArgumentException("A report format is required");
+
+        if (kinds == null)
+            throw new IllegalArgumentException("Thread kinds are required, even if empty");
+
+        scenarios = List.copyOf(scenarios);
+        kinds = List.copyOf(kinds);
+    }
+
+    // Options are written --name=value or --name value
+
+    static RunOptions parse(final @NotNull String... arguments) {
+        assert arguments != null;
+
+        var scenarios = defaultScenarios();
+        List<ThreadKind> kinds = List.of();
+        var repetitions = 1;
+        var warmup = 0;
+        var port = DEFAULT_PORT;
+        var concurrency = 0;
+        var rate = 0;
+        var format = ReportFormat.TEXT;
+        Path output = null;
+        var help = false;
+
+        for (var i = 0; i < arguments.length; i++) {
+            final var argument = arguments[i];
+
+            if (!argument.startsWith("--"))
+                throw new IllegalArgumentException("Unexpected argument: " + argument);
+
+            final var equals = argument.indexOf('=');
+            final var name = equals < 0 ? argument.substring(2) : argument.substring(2, equals);
+
+            if (name.equals("help")) {
+                help = true;
+
+                continue;
+            }
+
+            if (!VALUED_OPTIONS.contains(name))
+                throw new IllegalArgumentException("Unknown option: --" + name);
+
+            final String value;
+
+            if (equals >= 0)
+                value = argument.substring(equals + 1);
+            else if (i + 1 < arguments.length)
+                value = arguments[++i];
+            else
+                throw new IllegalArgumentException("Option --" + name + " needs a value");
+
+            switch (name) {
+                case "scenarios" -> scenarios = Arrays.stream(value.split(",")).map(Scenario::fromString).toList();
+                case "kinds" -> kinds = Arrays.stream(value.split(",")).map(ThreadKind::fromString).distinct().toList();
+                case "repetitions" -> repetitions = integer(name, value);
+                case "warmup" -> warmup = integer(name, value);
+                case "port" -> port = integer(name, value);
+                case "concurrency" -> concurrency = integer(name, value);
+                case "rate" -> rate = integer(name, value);
+                case "format" -> format = ReportFormat.fromString(value);
+                case "output" -> output = Path.of(value);
+                default -> throw new AssertionError(name);
+            }
+        }
+
+        return new RunOptions(scenarios, kinds, repetitions, warmup, port, concurrency, rate, format, output, help);
+    }
+
+    // The kinds to run on; with none named, the kind system property, leaving each scenario's own kind properties in force
+
+    List<ThreadKind> kindsToRun() {
+        return this.kinds.isEmpty() ? List.of(ThreadKind.fromSystemProperty()) : this.kinds;
+    }
+
+    // The options a forked carrier matrix cell needs to run its workload as this run would, on the given kind
+
+    List<String> cellArguments(final @NotNull ThreadKind kind) {
+        assert kind != null;
+
+        final List<String> arguments = new ArrayList<>();
+
+        arguments.add("--port=" + this.port);
+
+        if (this.concurrency > 0)
+            arguments.add("--concurrency=" + this.concurrency);
+
+        if (this.rate > 0)
+            arguments.add("--rate=" + this.rate);
+
+        if (!this.kinds.isEmpty())
+            arguments.add("--kinds=" + kind.name());
+
+        return arguments;
+    }
+
+    // The scenarios the system properties used to select on their own
+
+    static List<Scenario> defaultScenarios() {
+        if (Boolean.getBoolean(CarrierMatrix.PROPERTY))
+            return List.of(Scenario.CARRIERS);
+
+        if (Boolean.getBoolean(PinningProfiler.PROPERTY))
+            return List.of(Scenario.PINNING);
+
+        if (Boolean.getBoolean(FootprintProfiler.PROPERTY))
+            return List.of(Scenario.FOOTPRINT);
+
+        if (Boolean.getBoolean(MixedWorkload.PROPERTY))
+            return List.of(Scenario.MIXED);
+
+        return List.of(Scenario.EASY, Scenario.BUILDER, Scenario.EXECUTOR, Scenario.CLIENT_SERVER, Scenario.TASKS);
+    }
+
+    private static int integer(final @NotNull String name, final @NotNull String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (final NumberFormatException nfe) {
+            throw new IllegalArgumentException("Option --" + name + " needs a whole number: " + value);
+        }
+    }
+}
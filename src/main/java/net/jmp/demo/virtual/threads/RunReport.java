@@ -0,0 +1,301 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)RunReport.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+
+import java.util.function.ToDoubleFunction;
+
+/*
+ * The measured repetitions of a Main run, written as text,
+ * JSON or CSV. Scenarios that produce a workload result
+ * contribute a row per result, with its throughput and
+ * latency; the others contribute their elapsed time only.
+ * Every row carries the thread kind it ran on and the
+ * peak heap and platform threads seen while it ran; with
+ * more than one kind the text report ends with the kinds
+ * side by side.
+ */
+final class RunReport {
+    private static final double BYTES_PER_MIB = 1_024.0 * 1_024.0;
+
+    private final RunOptions options;
+    private final List<Measurement> measurements = new ArrayList<>();
+
+    RunReport(final @NotNull RunOptions options) {
+        super();
+
+        assert options != null;
+
+        this.options = options;
+    }
+
+    void add(final @NotNull Scenario scenario,
+             final @NotNull ThreadKind kind,
+             final @Positive int repetition,
+             final @PositiveOrZero long elapsedNanos,
+             final @NotNull ResourceMonitor monitor,
+             final @NotNull List<WorkloadResult> results) {
+        assert scenario != null;
+        assert kind != null;
+        assert monitor != null;
+        assert results != null;
+
+        final var peakHeapBytes = monitor.getPeakHeapBytes();
+        final var peakPlatformThreads = monitor.getPeakPlatformThreads();
+
+        if (results.isEmpty()) {
+            this.measurements.add(new Measurement(scenario, kind, repetition, elapsedNanos, peakHeapBytes, peakPlatformThreads, null));
+        } else {
+            for (final var result : results)
+                this.measurements.add(new Measurement(scenario, kind, repetition, elapsedNanos, peakHeapBytes, peakPlatformThreads, result));
+        }
+    }
+
+    void write(final @NotNull Writer writer) throws IOException {
+        assert writer != null;
+
+        final var out = new PrintWriter(writer);
+
+        switch (this.options.format()) {
+            case TEXT -> this.writeText(out);
+            case JSON -> this.writeJson(out);
+            case CSV -> this.writeCsv(out);
+        }
+
+        out.flush();
+
+        if (out.checkError())
+            throw new IOException("The report could not be written");
+    }
+
+    private void writeText(final @NotNull PrintWriter out) {
+        out.printf("%-14s %-9s %4s %11s %9s %8s %-14s %12s %10s %10s %10s %8s%n",
+                "scenario", "kind", "rep", "elapsed ms", "heap MiB", "threads", "workload", "ops/s", "p50 us", "p99 us", "max us", "failures");
+
+        for (final var measurement : this.measurements) {
+            final var result = measurement.result();
+
+            out.printf(Locale.ROOT, "%-14s %-9s %4d %11.1f %9.1f %8d",
+                    measurement.scenario().label(),
+                    measurement.kind().name().toLowerCase(Locale.ROOT),
+                    measurement.repetition(),
+                    measurement.elapsedNanos() / 1e6,
+                    measurement.peakHeapBytes() / BYTES_PER_MIB,
+                    measurement.peakPlatformThreads());
+
+            if (result == null) {
+                out.println();
+            } else {
+                out.printf(Locale.ROOT, " %-14s %12.0f %10.1f %10.1f %10.1f %8d%n",
+                        result.workload(),
+                        result.throughput(),
+                        result.p50Nanos() / 1_000.0,
+                        result.p99Nanos() / 1_000.0,
+                        result.maxNanos() / 1_000.0,
+                        result.failures());
+            }
+        }
+
+        if (this.kinds() > 1)
+            this.writeComparison(out);
+    }
+
+    // Means over the repetitions, one block per scenario and workload with a line per kind
+
+    private void writeComparison(final @NotNull PrintWriter out) {
+        final var groups = new LinkedHashMap<String, List<Measurement>>();
+
+        for (final var measurement : this.measurements)
+            groups.computeIfAbsent(measurement.group(), group -> new ArrayList<>()).add(measurement);
+
+        out.println();
+        out.printf("%-29s %-9s %11s %9s %8s %12s %10s%n", "scenario/workload", "kind", "elapsed ms", "heap MiB", "threads", "ops/s", "p99 us");
+
+        for (final var group : groups.entrySet()) {
+            for (final var kind : this.options.kindsToRun()) {
+                final var runs = group.getValue().stream().filter(measurement -> measurement.kind() == kind).toList();
+
+                if (runs.isEmpty())
+                    continue;
+
+                out.printf(Locale.ROOT, "%-29s %-9s %11.1f %9.1f %8.0f",
+                        group.getKey(),
+                        kind.name().toLowerCase(Locale.ROOT),
+                        mean(runs, measurement -> measurement.elapsedNanos() / 1e6),
+                        mean(runs, measurement -> measurement.peakHeapBytes() / BYTES_PER_MIB),
+                        mean(runs, Measurement::peakPlatformThreads));
+
+                if (runs.getFirst().result() == null) {
+                    out.println();
+                } else {
+                    out.printf(Locale.ROOT, " %12.0f %10.1f%n",
+                            mean(runs, measurement -> measurement.result().throughput()),
+                            mean(runs, measurement -> measurement.result().p99Nanos() / 1_000.0));
+                }
+            }
+        }
+    }
+
+    // The run's settings and build travel with the numbers so reports from different builds can be compared
+
+    private void writeJson(final @NotNull PrintWriter out) {
+        out.println("{");
+        out.printf("  \"version\": %s,%n", quote(version()));
+        out.printf("  \"java\": %s,%n", quote(System.getProperty("java.version")));
+        out.printf("  \"processors\": %d,%n", Runtime.getRuntime().availableProcessors());
+        out.printf("  \"repetitions\": %d,%n", this.options.repetitions());
+        out.printf("  \"warmup\": %d,%n", this.options.warmup());
+        out.printf("  \"concurrency\": %d,%n", this.options.concurrency());
+        out.println("  \"measurements\": [");
+
+        for (var i = 0; i < this.measurements.size(); i++) {
+            final var measurement = this.measurements.get(i);
+            final var result = measurement.result();
+
+            out.printf(Locale.ROOT, "    {\"scenario\": %s, \"kind\": %s, \"repetition\": %d, \"elapsedNanos\": %d, \"peakHeapBytes\": %d, \"peakPlatformThreads\": %d",
+                    quote(measurement.scenario().label()),
+                    quote(measurement.kind().name().toLowerCase(Locale.ROOT)),
+                    measurement.repetition(),
+                    measurement.elapsedNanos(),
+                    measurement.peakHeapBytes(),
+                    measurement.peakPlatformThreads());
+
+            if (result != null) {
+                out.printf(Locale.ROOT, ", \"workload\": %s, \"operations\": %d, \"failures\": %d, \"throughput\": %.1f, \"p50Nanos\": %d, \"p99Nanos\": %d, \"maxNanos\": %d",
+                        quote(result.workload()),
+                        result.operations(),
+                        result.failures(),
+                        result.throughput(),
+                        result.p50Nanos(),
+                        result.p99Nanos(),
+                        result.maxNanos());
+            }
+
+            out.println(i + 1 < this.measurements.size() ? "}," : "}");
+        }
+
+        out.println("  ]");
+        out.println("}");
+    }
+
+    private void writeCsv(final @NotNull PrintWriter out) {
+        out.println("scenario,kind,repetition,elapsedNanos,peakHeapBytes,peakPlatformThreads,workload,operations,failures,throughput,p50Nanos,p99Nanos,maxNanos");
+
+        for (final var measurement : this.measurements) {
+            final var result = measurement.result();
+
+            out.printf("%s,%s,%d,%d,%d,%d",
+                    measurement.scenario().label(),
+                    measurement.kind().name().toLowerCase(Locale.ROOT),
+                    measurement.repetition(),
+                    measurement.elapsedNanos(),
+                    measurement.peakHeapBytes(),
+                    measurement.peakPlatformThreads());
+
+            if (result == null) {
+                out.println(",,,,,,,");
+            } else {
+                out.printf(Locale.ROOT, ",%s,%d,%d,%.1f,%d,%d,%d%n",
+                        result.workload(),
+                        result.operations(),
+                        result.failures(),
+                        result.throughput(),
+                        result.p50Nanos(),
+                        result.p99Nanos(),
+                        result.maxNanos());
+            }
+        }
+    }
+
+    private long kinds() {
+        return this.measurements.stream().map(Measurement::kind).distinct().count();
+    }
+
+    private static double mean(final @NotNull List<Measurement> measurements, final @NotNull ToDoubleFunction<Measurement> value) {
+        return measurements.stream().mapToDouble(value).average().orElse(0);
+    }
+
+    private static String version() {
+        final var version = Main.class.getPackage().getImplementationVersion();
+
+        return version != null ? version : "unknown";
+    }
+
+    private static String quote(final @NotNull String value) {
+        final var quoted = new StringBuilder(value.length() + 2).append('"');
+
+        for (var i = 0; i < value.length(); i++) {
+            final var c = value.charAt(i);
+
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                default -> {
+                    if (c < ' ')
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    else
+                        quoted.append(c);
+                }
+            }
+        }
+
+        return quoted.append('"').toString();
+    }
+
+    // The result is null for a scenario that measures nothing but its elapsed time
+
+    private record Measurement(Scenario scenario,
+                               ThreadKind kind,
+                               int repetition,
+                               long elapsedNanos,
+                               long peakHeapBytes,
+                               int peakPlatformThreads,
+                               WorkloadResult result) {
+        private String group() {
+            return this.result == null
+                    ? this.scenario.label()
+                    : this.scenario.label() + "/" + this.result.workload();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)Scenario.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Locale;
+
+enum Scenario {
+    EASY,           // Virtual threads started the simple ways
+    BUILDER,        // Virtual threads from a builder
+    EXECUTOR,       // A virtual thread per task executor
+    CLIENT_SERVER,  // The client/server exchange, or a load run when a load profile is set
+    TASKS,          // The task profile
+    MIXED,          // CPU-bound and I/O-bound tasks sharing or splitting the carriers
+    PINNING,        // The tasks, client/server and executor scenarios under the pinning profiler
+    CARRIERS,       // The tasks and server workloads across the carrier matrix
+    FOOTPRINT;      // The memory held by idle connections, blocking and selector designs
+
+    // Accepts client-server, client_server or clientServer
+
+    static Scenario fromString(final @NotNull String value) {
+        assert value != null;
+
+        final var name = value.trim().replace("-", "").replace("_", "").toUpperCase(Locale.ROOT);
+
+        for (final var scenario : values()) {
+            if (scenario.name().replace("_", "").equals(name))
+                return scenario;
+        }
+
+        throw new IllegalArgumentException("Unknown scenario: " + value);
+    }
+
+    String label() {
+        return this.name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
@@ -0,0 +1,443 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)SelectorServer.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.io.IOException;
+
+import java.net.InetSocketAddress;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.LoggerFactory;
+
+import org.slf4j.ext.XLogger;
+
+final class SelectorServer implements StoppableServer {
+    private static final int BUFFER_SIZE = 8_192;
+    private static final byte[] ECHO_ACKNOWLEDGEMENT = Server.ECHO_ACKNOWLEDGEMENT.getBytes(StandardCharsets.UTF_8);
+    private static final ByteBuffer EXIT_COMMAND = ByteBuffer.wrap(FrameCodec.EXIT).asReadOnlyBuffer();
+    private static final ByteBuffer ECHO_COMMAND = ByteBuffer.wrap(FrameCodec.ECHO).asReadOnlyBuffer();
+
+    private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
+    private final Semaphore semaphore;
+    private final AcceptorProfile profile;
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final ServerMetrics metrics;
+
+    private volatile Selector selector;
+
+    SelectorServer(final @NotNull Semaphore semaphore, final @Positive int port) {
+        this(semaphore, AcceptorProfile.fromSystemProperties(port));
+    }
+
+    // One selector thread accepts on every port, so acceptors per port do not apply
+
+    SelectorServer(final @NotNull Semaphore semaphore, final @NotNull AcceptorProfile profile) {
+        super();
+
+        assert semaphore != null;
+        assert profile != null;
+
+        this.semaphore = semaphore;
+        this.profile = profile;
+        this.metrics = new ServerMetrics("selector-" + profile.firstPort(), null);  // No admission control
+    }
+
+    @Override
+    public Void call() throws IOException {
+        this.logger.entry();
+
+        this.logger.info("Will listen on port(s) {} with a selector", this.profile.ports());
+
+        this.metrics.start();
+
+        try {
+            this.listen();
+        } finally {
+            this.metrics.close();
+        }
+
+        this.logger.info("Served {} connection(s); peak of {} concurrent", this.metrics.getClosedConnections(), this.metrics.getPeakConnections());
+        this.logger.info("Metrics: {}", this.metrics.summary());
+
+        this.logger.exit();
+
+        return null;
+    }
+
+    @Override
+    public void stop() {
+        this.logger.entry();
+
+        this.latch.countDown();
+
+        final var current = this.selector;
+
+        if (current != null)
+            current.wakeup();
+
+        this.logger.exit();
+    }
+
+    private void listen() throws IOException {
+        this.logger.entry();
+
+        final var serverChannels = new ArrayList<ServerSocketChannel>(this.profile.ports().size());
+
+        try (final var selector = Selector.open()) {
+            for (final var port : this.profile.ports()) {
+                final var serverChannel = ServerSocketChannel.open();
+
+                serverChannels.add(serverChannel);
+
+                serverChannel.bind(new InetSocketAddress(port), Server.BACKLOG);
+                serverChannel.configureBlocking(false);
+                serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            }
+
+            this.selector = selector;
+
+            this.logger.debug("Releasing semaphore...");
+
+            this.semaphore.release();
+
+            while (this.latch.getCount() == 1 && !Thread.currentThread().isInterrupted()) {
+                selector.select();
+
+                this.processSelectedKeys(selector);
+            }
+
+            // Read whatever the remaining clients have already sent
+
+            selector.selectNow();
+
+            this.processSelectedKeys(selector);
+            this.closeAll(selector);
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
+            this.logger.error("Exception caught when trying to listen on port(s) {} or listening for a connection", this.profile.ports());
+
+            throw ioe;  // Let the caller see that the server failed
+        } finally {
+            for (final var serverChannel : serverChannels) {
+                try {
+                    serverChannel.close();
+                } catch (final IOException ioe) {
+                    this.logger.catching(ioe);
+                }
+            }
+        }
+
+        this.logger.exit();
+    }
+
+    private void processSelectedKeys(final @NotNull Selector selector) throws IOException {
+        assert selector != null;
+
+        final var iterator = selector.selectedKeys().iterator();
+
+        while (iterator.hasNext()) {
+            final var key = iterator.next();
+
+            iterator.remove();
+
+            if (!key.isValid())
+                continue;
+
+            if (key.isAcceptable())
+                this.accept(selector, (ServerSocketChannel) key.channel());
+            else if (key.isReadable())
+                this.read(key);
+            else if (key.isWritable())
+                this.write(key);
+        }
+    }
+
+    private void accept(final @NotNull Selector selector, final @NotNull ServerSocketChannel serverChannel) throws IOException {
+        assert selector != null;
+        assert serverChannel != null;
+
+        final var acceptStart = System.nanoTime();
+        final var clientChannel = serverChannel.accept();
+
+        this.metrics.acceptTook(System.nanoTime() - acceptStart);
+
+        if (clientChannel != null) {
+            clientChannel.configureBlocking(false);
+            clientChannel.register(selector, SelectionKey.OP_READ, new Connection());
+
+            this.metrics.connectionOpened();
+        }
+    }
+
+    private void read(final @NotNull SelectionKey key) {
+        assert key != null;
+
+        final var channel = (SocketChannel) key.channel();
+        final var connection = (Connection) key.attachment();
+
+        try {
+            final var bytesRead = channel.read(connection.in);
+
+            if (bytesRead > 0)
+                this.metrics.bytesRead(bytesRead);
+
+            if (connection.framing == null)
+                this.negotiate(connection);
+
+            if (connection.framing == Framing.BINARY)
+                this.frameBinary(connection);
+            else if (connection.framing == Framing.TEXT)
+                this.frameLines(connection);
+
+            // A peer that has closed its end will not read any pending replies
+
+            if (bytesRead == -1)
+                this.close(key);
+            else
+                this.write(key);
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
+
+            this.close(key);
+        }
+    }
+
+    // Reads are suspended while replies are pending so the output buffer never outgrows the input buffer
+
+    private void write(final @NotNull SelectionKey key) {
+        assert key != null;
+
+        final var channel = (SocketChannel) key.channel();
+        final var out = ((Connection) key.attachment()).out;
+
+        try {
+            out.flip();
+
+            if (out.hasRemaining())
+                channel.write(out);
+
+            out.compact();
+
+            if (key.isValid())
+                key.interestOps(out.position() > 0 ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
+
+            this.close(key);
+        }
+    }
+
+    // The client's first byte chooses the framing; the binary preamble is consumed
+
+    private void negotiate(final @NotNull Connection connection) {
+        assert connection != null;
+
+        final var buffer = connection.in;
+
+        if (buffer.position() == 0)
+            return;
+
+        if (buffer.get(0) == FrameCodec.PREAMBLE) {
+            connection.framing = Framing.BINARY;
+
+            buffer.flip().position(1);
+            buffer.compact();
+        } else {
+            connection.framing = Framing.TEXT;
+        }
+    }
+
+    // Handles every complete frame in the input buffer and compacts any partial frame to the front of it
+
+    private void frameBinary(final @NotNull Connection connection) throws IOException {
+        assert connection != null;
+
+        final var buffer = connection.in;
+
+        buffer.flip();
+
+        while (buffer.remaining() >= FrameCodec.HEADER_SIZE) {
+            final var length = buffer.getInt(buffer.position());
+
+            FrameCodec.checkLength(length);
+
+            if (buffer.remaining() < FrameCodec.HEADER_SIZE + length)
+                break;
+
+            this.handleFrame(connection,
+                    buffer.get(buffer.position() + Integer.BYTES),
+                    buffer.slice(buffer.position() + FrameCodec.HEADER_SIZE, length));
+
+            buffer.position(buffer.position() + FrameCodec.HEADER_SIZE + length);
+        }
+
+        buffer.compact();
+    }
+
+    private void handleFrame(final @NotNull Connection connection, final byte type, final @NotNull ByteBuffer payload) {
+        assert connection != null;
+        assert payload != null;
+
+        this.metrics.messageRead();
+
+        if (type != FrameCodec.COMMAND) {
+            if (connection.echo)
+                connection.out.putInt(payload.remaining()).put(type).put(payload);
+
+            return;
+        }
+
+        this.metrics.commandProcessed();
+
+        if (this.logger.isInfoEnabled())
+            this.logger.info("Received command from client: {}", StandardCharsets.UTF_8.decode(payload.duplicate()));
+
+        if (payload.equals(EXIT_COMMAND)) {
+            this.logger.debug("Counting down latch");
+            this.latch.countDown();
+        } else if (payload.equals(ECHO_COMMAND)) {
+            connection.echo = true;
+            connection.out.putInt(ECHO_ACKNOWLEDGEMENT.length).put(FrameCodec.COMMAND).put(ECHO_ACKNOWLEDGEMENT);
+        }
+    }
+
+    // Handles every complete line in the input buffer and compacts any partial line to the front of it
+
+    private void frameLines(final @NotNull Connection connection) {
+        assert connection != null;
+
+        final var buffer = connection.in;
+
+        buffer.flip();
+
+        var lineStart = buffer.position();
+
+        for (var i = lineStart; i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                var lineEnd = i;
+
+                if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r')
+                    lineEnd--;
+
+                this.handleLine(connection, buffer.slice(lineStart, lineEnd - lineStart));
+
+                lineStart = i + 1;
+            }
+        }
+
+        buffer.position(lineStart);
+
+        if (lineStart == 0 && buffer.limit() == buffer.capacity()) {
+            this.logger.warn("Discarding a line longer than {} bytes", BUFFER_SIZE);
+
+            buffer.clear();
+        } else {
+            buffer.compact();
+        }
+    }
+
+    private void handleLine(final @NotNull Connection connection, final @NotNull ByteBuffer line) {
+        assert connection != null;
+        assert line != null;
+
+        if (connection.echo)
+            connection.out.put(line.duplicate()).put((byte) '\n');
+
+        final var inputLine = StandardCharsets.UTF_8.decode(line).toString();
+
+        this.logger.info("Received from client: {}", inputLine);
+        this.metrics.messageRead();
+
+        if (inputLine.equals(CommandRegistry.EXIT)) {
+            this.logger.debug("Counting down latch");
+            this.metrics.commandProcessed();
+            this.latch.countDown();
+        }
+
+        if (!connection.echo && inputLine.equals(Server.ECHO_COMMAND)) {
+            connection.echo = true;
+            this.metrics.commandProcessed();
+            connection.out.put(ECHO_ACKNOWLEDGEMENT).put((byte) '\n');
+        }
+    }
+
+    private void close(final @NotNull SelectionKey key) {
+        assert key != null;
+
+        if (!key.isValid())
+            return;
+
+        key.cancel();
+
+        try {
+            key.channel().close();
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
+        }
+
+        this.metrics.connectionClosed();
+    }
+
+    private void closeAll(final @NotNull Selector selector) {
+        assert selector != null;
+
+        for (final var key : selector.keys()) {
+            if (!(key.channel() instanceof ServerSocketChannel))
+                this.close(key);
+        }
+    }
+
+    // Package-private so the footprint profiler can weigh one
+
+    static final class Connection {
+        private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private boolean echo;
+        private Framing framing;    // Unknown until the first byte arrives
+    }
+}
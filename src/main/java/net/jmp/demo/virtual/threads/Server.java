@@ -1,10 +1,11 @@
 package net.jmp.demo.virtual.threads;
 
 /*
+ * (#)Server.java   0.5.0   10/18/2026
  * (#)Server.java   0.3.0   03/22/2024
  *
  * @author    Jonathan Parker
- * @version   0.3.0
+ * @version   0.5.0
  * @since     0.3.0
  *
  * MIT License
@@ -34,108 +35,535 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PushbackInputStream;
 
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
 
-import java.util.concurrent.Callable;
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.LoggerFactory;
 
 import org.slf4j.ext.XLogger;
 
-final class Server implements Callable<Void> {
+final class Server implements StoppableServer {
+    static final int BACKLOG = 4_096;
+    static final String ECHO_COMMAND = "#echo"; // Every later line on the connection is echoed; no data word starts with '#'
+    static final String ECHO_ACKNOWLEDGEMENT = "ok";
+    static final String BUSY_RESPONSE = "busy";    // Sent as a line, whatever the framing, before a rejected connection is closed
+
+    private static final long DRAIN_TIMEOUT_SECONDS = 30;
+
     private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
     private final Semaphore semaphore;
-    private final int port;
+    private final AcceptorProfile profile;
+    private final AdmissionControl admission;
+    private final ConnectionTimeouts timeouts;
+    private final ThreadKind threadKind;
+    private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+    private final ServerMetrics metrics;
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final CommandRegistry commands;
+    private final CommandRegistry echoCommands;
 
     Server(final @NotNull Semaphore semaphore, final @Positive int port) {
+        this(semaphore,
+                AcceptorProfile.fromSystemProperties(port),
+                AdmissionControl.fromSystemProperties(),
+                ConnectionTimeouts.fromSystemProperties(),
+                ThreadKind.fromSystemProperty());
+    }
+
+    // The thread kind runs the connection handlers; the acceptors stay on virtual threads
+
+    Server(final @NotNull Semaphore semaphore,
+           final @NotNull AcceptorProfile profile,
+           final @NotNull AdmissionControl admission,
+           final @NotNull ConnectionTimeouts timeouts,
+           final @NotNull ThreadKind threadKind) {
         super();
 
         assert semaphore != null;
-        assert port > 0;
+        assert profile != null;
+        assert admission != null;
+        assert timeouts != null;
+        assert threadKind != null;
 
         this.semaphore = semaphore;
-        this.port = port;
+        this.profile = profile;
+        this.admission = admission;
+        this.timeouts = timeouts;
+        this.threadKind = threadKind;
+        this.metrics = new ServerMetrics("blocking-" + profile.firstPort(), admission);
+        this.commands = CommandRegistry.standard(this.latch, this.metrics);
+        this.echoCommands = CommandRegistry.echoing(this.latch);
     }
 
     @Override
-    public Void call() {
+    public Void call() throws IOException {
         this.logger.entry();
 
-        this.logger.info("Will listen on port {}", this.port);
+        this.logger.info("Will handle connections on {} threads", this.threadKind);
+        this.logger.info("Will listen on port(s) {} with {} acceptor(s) each{}",
+                this.profile.ports(),
+                this.profile.acceptorsPerPort(),
+                this.profile.reusePort() ? " sharing each port through SO_REUSEPORT" : "");
+        this.logger.info("Will serve at most {} connections, with {} more queued for up to {} ms",
+                this.admission.getMaxConnections(),
+                this.admission.getMaxQueued(),
+                this.admission.getQueueTimeout().toMillis());
+        this.logger.info("Connections time out after {} ms idle or {} ms inside one message",
+                this.timeouts.idle().toMillis(),
+                this.timeouts.read().toMillis());
+
+        this.metrics.start();
+
+        try {
+            this.listen();
+        } finally {
+            this.metrics.close();
+        }
 
-        this.listen();
+        this.logger.info("Served {} connection(s); peak of {} concurrent", this.getServedConnections(), this.getPeakConnections());
+        this.logger.info("Metrics: {}", this.metrics.summary());
 
         this.logger.exit();
 
         return null;
     }
 
-    private void listen() {
+    @Override
+    public void stop() {
+        this.logger.entry();
+
+        this.latch.countDown(); // The exit watcher closes the server socket
+
+        this.closeOpenSockets();
+
+        this.logger.exit();
+    }
+
+    long getServedConnections() {
+        return this.metrics.getClosedConnections();
+    }
+
+    int getPeakConnections() {
+        return this.metrics.getPeakConnections();
+    }
+
+    ServerMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    private void listen() throws IOException {
+        this.logger.entry();
+
+        final var serverSockets = this.bind();
+
+        try (final var executor = this.threadKind.newExecutor()) {
+            this.closeOnExit(serverSockets, this.latch);
+
+            // Every acceptor feeds the same handler executor
+
+            final var failure = new AtomicReference<IOException>();
+            final var acceptors = new ArrayList<Thread>(serverSockets.size());
+
+            for (var i = 0; i < serverSockets.size(); i++) {
+                final var serverSocket = serverSockets.get(i);
+
+                acceptors.add(Thread.ofVirtual()
+                        .name("acceptor-" + serverSocket.getLocalPort() + "-" + i)
+                        .start(() -> this.acceptLoop(serverSocket, executor, failure)));
+            }
+
+            this.logger.debug("Releasing semaphore...");
+
+            this.semaphore.release();
+
+            for (final var acceptor : acceptors)
+                acceptor.join();
+
+            if (failure.get() != null)
+                throw failure.get();
+
+            this.drain(executor);
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
+            this.logger.error("Exception caught when listening for a connection on port(s) {}", this.profile.ports());
+
+            throw ioe;  // Let the caller see that the server failed
+        } catch (final InterruptedException ie) {
+            this.logger.catching(ie);
+
+            Thread.currentThread().interrupt(); // Restore the interrupt status
+        }
+
+        this.logger.exit();
+    }
+
+    private List<ServerSocket> bind() throws IOException {
         this.logger.entry();
 
-        final var latch = new CountDownLatch(1);
+        var reusePort = this.profile.reusePort();
+
+        if (reusePort && !this.supportsReusePort()) {
+            this.logger.warn("SO_REUSEPORT is not supported here; binding one acceptor per port");
+
+            reusePort = false;
+        }
+
+        final var socketsPerPort = reusePort ? this.profile.acceptorsPerPort() : 1;
+        final var serverSockets = new ArrayList<ServerSocket>(this.profile.ports().size() * socketsPerPort);
 
-        var releasedSemaphore = false;
+        try {
+            for (final var port : this.profile.ports()) {
+                for (var i = 0; i < socketsPerPort; i++) {
+                    final var serverSocket = new ServerSocket();
 
-        try (final var serverSocket = new ServerSocket(this.port)) {
-            while (latch.getCount() == 1) {
-                if (!releasedSemaphore) {
-                    this.logger.debug("Releasing semaphore...");
+                    serverSockets.add(serverSocket);
 
-                    releasedSemaphore = true;
+                    if (reusePort)
+                        serverSocket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
 
-                    this.semaphore.release();
+                    serverSocket.bind(new InetSocketAddress(port), BACKLOG);
                 }
+            }
+        } catch (final IOException ioe) {
+            this.logger.error("Exception caught when trying to listen on port(s) {}", this.profile.ports());
+
+            for (final var serverSocket : serverSockets)
+                this.closeQuietly(serverSocket);
+
+            throw ioe;
+        }
+
+        this.logger.exit(serverSockets.size());
+
+        return serverSockets;
+    }
+
+    private boolean supportsReusePort() throws IOException {
+        try (final var probe = new ServerSocket()) {
+            return probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        }
+    }
+
+    private void acceptLoop(final @NotNull ServerSocket serverSocket,
+                            final @NotNull ExecutorService executor,
+                            final @NotNull AtomicReference<IOException> failure) {
+        this.logger.entry(serverSocket, executor, failure);
+
+        assert serverSocket != null;
+        assert executor != null;
+        assert failure != null;
+
+        try {
+            while (this.latch.getCount() == 1) {
+                final var acceptStart = System.nanoTime();
+
+                final Socket clientSocket;
+
+                try {
+                    clientSocket = serverSocket.accept();   // Accept incoming connections
+
+                    this.metrics.acceptTook(System.nanoTime() - acceptStart);
+                } catch (final SocketException se) {
+                    if (this.latch.getCount() == 0)
+                        break;  // The server socket was closed by the exit command
+
+                    throw se;
+                }
+
+                this.handleClientRequest(executor, clientSocket);
+            }
+        } catch (final IOException ioe) {
+            failure.compareAndSet(null, ioe);
+
+            this.latch.countDown();     // Stop the other acceptors too
+        }
+
+        this.logger.exit();
+    }
+
+    private void closeOnExit(final @NotNull List<ServerSocket> serverSockets, final @NotNull CountDownLatch latch) {
+        this.logger.entry(serverSockets, latch);
+
+        assert serverSockets != null;
+        assert latch != null;
 
-                final var clientSocket = serverSocket.accept();    // Accept incoming connections
+        Thread.ofVirtual().name("server-exit").start(() -> {
+            try {
+                latch.await();
 
-                handleClientRequest(clientSocket, latch);
+                this.logger.debug("Closing {} server socket(s)", serverSockets.size());
+
+                for (final var serverSocket : serverSockets)
+                    this.closeQuietly(serverSocket);    // Unblocks accept()
+            } catch (final InterruptedException ie) {
+                this.logger.catching(ie);
+
+                Thread.currentThread().interrupt(); // Restore the interrupt status
             }
+        });
+
+        this.logger.exit();
+    }
+
+    private void closeQuietly(final @NotNull ServerSocket serverSocket) {
+        try {
+            serverSocket.close();
         } catch (final IOException ioe) {
             this.logger.catching(ioe);
-            this.logger.error("Exception caught when trying to listen on port {} or listening for a connection", this.port);
+        }
+    }
+
+    private void drain(final @NotNull ExecutorService executor) throws InterruptedException {
+        this.logger.entry(executor);
+
+        assert executor != null;
+
+        executor.shutdown();
+
+        this.logger.debug("Draining {} active connection(s)", this.metrics.getActiveConnections());
+
+        if (!executor.awaitTermination(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            this.logger.warn("Closing {} connection(s) still open after {} seconds", this.openSockets.size(), DRAIN_TIMEOUT_SECONDS);
+
+            this.closeOpenSockets();
         }
 
         this.logger.exit();
     }
 
-    private void handleClientRequest(final @NotNull Socket clientSocket, final @NotNull CountDownLatch latch) {
-        this.logger.entry(clientSocket, latch);
+    private void closeOpenSockets() {
+        for (final var socket : this.openSockets) {
+            try {
+                socket.close();
+            } catch (final IOException ioe) {
+                this.logger.catching(ioe);
+            }
+        }
+    }
+
+    private void handleClientRequest(final @NotNull ExecutorService executor, final @NotNull Socket clientSocket) {
+        this.logger.entry(executor, clientSocket);
 
+        assert executor != null;
         assert clientSocket != null;
-        assert latch != null;
 
-        final var thread = Thread.ofVirtual().start(() -> {
-            try (final var in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()))) {
-                String inputLine;
+        this.openSockets.add(clientSocket);
+
+        final var context = new ConnectionContext(clientSocket);
 
-                while ((inputLine = in.readLine()) != null) {
-                    this.logger.info("Received from client: {}", inputLine);
+        executor.submit(() -> context.run(() -> {
+            this.metrics.connectionOpened();
 
-                    if (inputLine.startsWith("exit")) {
-                        this.logger.debug("Counting down latch");
-                        latch.countDown();
+            try {
+                if (this.admit()) {
+                    try {
+                        this.serve();
+                    } finally {
+                        this.admission.release();
                     }
                 }
-            } catch (final IOException ioe) {
-                this.logger.catching(ioe);
+            } finally {
+                this.openSockets.remove(clientSocket);
+                this.metrics.connectionClosed();
+
+                if (this.logger.isDebugEnabled())
+                    this.logger.debug("Closed {}", context);
             }
-        });
+        }));
+
+        this.logger.exit();
+    }
+
+    // Waits in the admission queue on this connection's own thread; a rejected client is told it was busy
+
+    private boolean admit() {
+        final var clientSocket = ConnectionContext.current().getSocket();
+        final var admissionStart = System.nanoTime();
 
         try {
-            thread.join();
+            if (this.admission.admit()) {
+                this.metrics.admissionWaited(System.nanoTime() - admissionStart);
+
+                return true;
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt(); // Restore the interrupt status
+        }
+
+        this.metrics.admissionWaited(System.nanoTime() - admissionStart);
+
+        if (this.logger.isDebugEnabled())
+            this.logger.debug("Rejecting a connection from {}", clientSocket.getRemoteSocketAddress());
+
+        try (clientSocket) {
+            clientSocket.getOutputStream().write((BUSY_RESPONSE + '\n').getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
+        }
+
+        return false;
+    }
+
+    private void serve() {
+        final var context = ConnectionContext.current();
+        final var clientSocket = context.getSocket();
+
+        try (
+                clientSocket;
+                final var timed = this.timeouts.apply(clientSocket, context.counting(this.metrics.counting(clientSocket.getInputStream())), this.metrics);
+                final var in = new PushbackInputStream(timed);
+                final var out = context.counting(clientSocket.getOutputStream())
+        ) {
+            final var session = new CommandRegistry.Session(clientSocket.getInetAddress().isLoopbackAddress());
+            final var first = in.read();    // The client's first byte chooses the framing
+
+            if (first == FrameCodec.PREAMBLE) {
+                this.serveFrames(in, out, timed, session);
+            } else if (first != -1) {
+                in.unread(first);
+
+                this.serveLines(in, out, timed, session);
+            }
+        } catch (final SocketTimeoutException ste) {
+            if (this.logger.isDebugEnabled())
+                this.logger.debug("Closing the connection from {}: {}", clientSocket.getRemoteSocketAddress(), ste.getMessage());
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
         } catch (final InterruptedException ie) {
             this.logger.catching(ie);
 
             Thread.currentThread().interrupt(); // Restore the interrupt status
         }
+    }
 
-        this.logger.exit();
+    private void serveLines(final @NotNull InputStream inputStream,
+                            final @NotNull OutputStream outputStream,
+                            final @NotNull ConnectionTimeouts.TimedInputStream timed,
+                            final @NotNull CommandRegistry.Session session) throws IOException, InterruptedException {
+        assert inputStream != null;
+        assert outputStream != null;
+        assert timed != null;
+        assert session != null;
+
+        final var in = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        final var out = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+        String inputLine;
+
+        while ((inputLine = in.readLine()) != null) {
+            timed.messageCompleted();
+
+            this.logger.info("Received from client: {}", inputLine);
+            this.metrics.messageRead();
+            ConnectionContext.current().messageRead();
+
+            if (session.isEcho()) {
+                this.execute(this.echoCommands, session, inputLine);
+
+                out.write(inputLine);
+                out.write('\n');
+            } else {
+                final var reply = this.execute(this.commands, session, inputLine);
+
+                if (reply != null) {
+                    out.write(reply);
+                    out.write('\n');
+                }
+            }
+
+            if (!in.ready())
+                out.flush();    // Pipelined requests get their replies in one write
+        }
+    }
+
+    // Payloads are matched and echoed straight from the decoder's buffer; only commands are ever logged
+
+    private void serveFrames(final @NotNull InputStream in,
+                             final @NotNull OutputStream out,
+                             final @NotNull ConnectionTimeouts.TimedInputStream timed,
+                             final @NotNull CommandRegistry.Session session) throws IOException, InterruptedException {
+        assert in != null;
+        assert out != null;
+        assert timed != null;
+        assert session != null;
+
+        final var decoder = new FrameCodec.Decoder(in);
+        final var encoder = new FrameCodec.Encoder(out);
+
+        while (decoder.next()) {
+            timed.messageCompleted();
+
+            this.metrics.messageRead();
+            ConnectionContext.current().messageRead();
+
+            if (decoder.type() == FrameCodec.COMMAND) {
+                final var command = new String(decoder.buffer(), decoder.offset(), decoder.length(), StandardCharsets.UTF_8);
+
+                if (this.logger.isInfoEnabled())
+                    this.logger.info("Received command from client: {}", command);
+
+                final var reply = this.execute(this.commands, session, command);   // Data frames are never commands
+
+                if (reply != null)
+                    encoder.write(FrameCodec.COMMAND, FrameCodec.bytes(reply));
+            } else if (session.isEcho()) {
+                encoder.write(decoder.type(), decoder.buffer(), decoder.offset(), decoder.length());
+            }
+
+            if (!decoder.ready())
+                encoder.flush();    // Pipelined requests get their replies in one write
+        }
+    }
+
+    // Returns the command's reply, or null when the line is not a command or the command has no reply
+
+    private String execute(final @NotNull CommandRegistry registry,
+                           final @NotNull CommandRegistry.Session session,
+                           final @NotNull String line) throws InterruptedException {
+        assert registry != null;
+        assert session != null;
+        assert line != null;
+
+        final var command = registry.resolve(line);
+
+        if (command == null)
+            return null;
+
+        this.metrics.commandProcessed();
+
+        try {
+            return command.execute(session, CommandRegistry.argument(line));
+        } catch (final IllegalArgumentException iae) {
+            if (this.logger.isDebugEnabled())
+                this.logger.debug("Rejecting command '{}': {}", line, iae.getMessage());
+
+            return CommandRegistry.ERROR_RESPONSE;
+        }
     }
 }
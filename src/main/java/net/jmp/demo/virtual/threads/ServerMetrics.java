@@ -0,0 +1,358 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)ServerMetrics.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+
+import java.lang.management.ManagementFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.LoggerFactory;
+
+import org.slf4j.ext.XLogger;
+
+/*
+ * Counters and gauges for one server, updated from the
+ * connection threads without locks. They are published
+ * as an MXBean for the server's lifetime and, when the
+ * file property is set, appended to that file as one
+ * CSV row per interval so a run can be charted later.
+ */
+final class ServerMetrics implements ServerMetricsMXBean, AutoCloseable {
+    static final String FILE_PROPERTY = "net.jmp.demo.virtual.threads.metrics.file";
+    static final String INTERVAL_PROPERTY = "net.jmp.demo.virtual.threads.metrics.intervalSeconds";
+
+    private static final String DOMAIN = "net.jmp.demo.virtual.threads";
+    private static final long DEFAULT_INTERVAL_SECONDS = 10;
+    private static final String CSV_HEADER = "epochMillis,accepted,active,peak,closed,bytesRead,messagesRead,commands,acceptMillis,admissionWaitMillis,idleTimeouts,readTimeouts,admitted,rejected,queued,availablePermits";
+
+    private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
+    private final String name;
+    private final AdmissionControl admission;
+    private final LongAdder acceptedConnections = new LongAdder();
+    private final LongAdder closedConnections = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder messagesRead = new LongAdder();
+    private final LongAdder commandsProcessed = new LongAdder();
+    private final LongAdder acceptNanos = new LongAdder();
+    private final LongAdder admissionWaitNanos = new LongAdder();
+    private final LongAdder idleTimeouts = new LongAdder();
+    private final LongAdder readTimeouts = new LongAdder();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicInteger peakConnections = new AtomicInteger();
+
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private ObjectName objectName;
+    private Thread dumper;
+
+    // The name distinguishes servers in JMX, such as "blocking-8080"; admission is null for a server without it
+
+    ServerMetrics(final @NotNull String name, final AdmissionControl admission) {
+        super();
+
+        assert name != null;
+
+        this.name = name;
+        this.admission = admission;
+    }
+
+    void start() {
+        this.logger.entry();
+
+        try {
+            this.objectName = new ObjectName(DOMAIN + ":type=ServerMetrics,name=" + ObjectName.quote(this.name));
+
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, this.objectName);
+        } catch (final JMException jme) {
+            this.logger.catching(jme);
+            this.logger.warn("Metrics for {} are not published over JMX", this.name);
+
+            this.objectName = null;
+        }
+
+        final var file = System.getProperty(FILE_PROPERTY);
+
+        if (file != null && !file.isBlank()) {
+            final var intervalMillis = TimeUnit.SECONDS.toMillis(Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL_SECONDS));
+
+            this.dumper = Thread.ofPlatform().name("metrics-" + this.name).daemon().start(() -> this.dump(Path.of(file), intervalMillis));
+        }
+
+        this.logger.exit();
+    }
+
+    @Override
+    public void close() {
+        this.logger.entry();
+
+        this.stopped.countDown();
+
+        if (this.dumper != null) {
+            try {
+                this.dumper.join();
+            } catch (final InterruptedException ie) {
+                this.logger.catching(ie);
+
+                Thread.currentThread().interrupt(); // Restore the interrupt status
+            }
+        }
+
+        if (this.objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+            } catch (final JMException jme) {
+                this.logger.catching(jme);
+            }
+        }
+
+        this.logger.exit();
+    }
+
+    void connectionOpened() {
+        this.acceptedConnections.increment();
+        this.peakConnections.accumulateAndGet(this.activeConnections.incrementAndGet(), Math::max);
+    }
+
+    void connectionClosed() {
+        this.activeConnections.decrementAndGet();
+        this.closedConnections.increment();
+    }
+
+    void bytesRead(final long bytes) {
+        this.bytesRead.add(bytes);
+    }
+
+    void messageRead() {
+        this.messagesRead.increment();
+    }
+
+    void commandProcessed() {
+        this.commandsProcessed.increment();
+    }
+
+    void acceptTook(final long nanos) {
+        this.acceptNanos.add(nanos);
+    }
+
+    void admissionWaited(final long nanos) {
+        this.admissionWaitNanos.add(nanos);
+    }
+
+    void idleTimedOut() {
+        this.idleTimeouts.increment();
+    }
+
+    void readTimedOut() {
+        this.readTimeouts.increment();
+    }
+
+    // Counts what the connection thread reads, one bulk read at a time
+
+    InputStream counting(final @NotNull InputStream in) {
+        assert in != null;
+
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                final var value = super.read();
+
+                if (value != -1)
+                    ServerMetrics.this.bytesRead.increment();
+
+                return value;
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                final var bytes = super.read(buffer, offset, length);
+
+                if (bytes > 0)
+                    ServerMetrics.this.bytesRead.add(bytes);
+
+                return bytes;
+            }
+        };
+    }
+
+    @Override
+    public long getAcceptedConnections() {
+        return this.acceptedConnections.sum();
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return this.activeConnections.get();
+    }
+
+    @Override
+    public int getPeakConnections() {
+        return this.peakConnections.get();
+    }
+
+    @Override
+    public long getClosedConnections() {
+        return this.closedConnections.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return this.bytesRead.sum();
+    }
+
+    @Override
+    public long getMessagesRead() {
+        return this.messagesRead.sum();
+    }
+
+    @Override
+    public long getCommandsProcessed() {
+        return this.commandsProcessed.sum();
+    }
+
+    @Override
+    public long getAcceptMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.acceptNanos.sum());
+    }
+
+    @Override
+    public long getAdmissionWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.admissionWaitNanos.sum());
+    }
+
+    @Override
+    public long getIdleTimeouts() {
+        return this.idleTimeouts.sum();
+    }
+
+    @Override
+    public long getReadTimeouts() {
+        return this.readTimeouts.sum();
+    }
+
+    @Override
+    public long getAdmittedConnections() {
+        return this.admission == null ? 0 : this.admission.getAdmitted();
+    }
+
+    @Override
+    public long getRejectedConnections() {
+        return this.admission == null ? 0 : this.admission.getRejected();
+    }
+
+    @Override
+    public int getQueuedConnections() {
+        return this.admission == null ? 0 : this.admission.getQueued();
+    }
+
+    @Override
+    public int getAvailablePermits() {
+        return this.admission == null ? -1 : this.admission.getAvailablePermits();
+    }
+
+    String summary() {
+        return String.format("accepted=%d admitted=%d rejected=%d closed=%d peak=%d bytes read=%d messages=%d commands=%d accept=%d ms admission wait=%d ms idle timeouts=%d read timeouts=%d",
+                this.getAcceptedConnections(),
+                this.getAdmittedConnections(),
+                this.getRejectedConnections(),
+                this.getClosedConnections(),
+                this.getPeakConnections(),
+                this.getBytesRead(),
+                this.getMessagesRead(),
+                this.getCommandsProcessed(),
+                this.getAcceptMillis(),
+                this.getAdmissionWaitMillis(),
+                this.getIdleTimeouts(),
+                this.getReadTimeouts());
+    }
+
+    // Appends a row per interval and a last one when the server stops
+
+    private void dump(final @NotNull Path file, final long intervalMillis) {
+        try (final Writer writer = Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (Files.size(file) == 0)
+                writer.write(CSV_HEADER + System.lineSeparator());
+
+            var last = false;
+
+            while (!last) {
+                last = this.stopped.await(intervalMillis, TimeUnit.MILLISECONDS);
+
+                writer.write(this.row() + System.lineSeparator());
+                writer.flush();
+            }
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
+            this.logger.warn("Stopped writing metrics for {} to {}", this.name, file);
+        } catch (final InterruptedException ie) {
+            this.logger.catching(ie);
+
+            Thread.currentThread().interrupt(); // Restore the interrupt status
+        }
+    }
+
+    private String row() {
+        return String.join(",",
+                Long.toString(System.currentTimeMillis()),
+                Long.toString(this.getAcceptedConnections()),
+                Integer.toString(this.getActiveConnections()),
+                Integer.toString(this.getPeakConnections()),
+                Long.toString(this.getClosedConnections()),
+                Long.toString(this.getBytesRead()),
+                Long.toString(this.getMessagesRead()),
+                Long.toString(this.getCommandsProcessed()),
+                Long.toString(this.getAcceptMillis()),
+                Long.toString(this.getAdmissionWaitMillis()),
+                Long.toString(this.getIdleTimeouts()),
+                Long.toString(this.getReadTimeouts()),
+                Long.toString(this.getAdmittedConnections()),
+                Long.toString(this.getRejectedConnections()),
+                Integer.toString(this.getQueuedConnections()),
+                Integer.toString(this.getAvailablePermits()));
+    }
+}
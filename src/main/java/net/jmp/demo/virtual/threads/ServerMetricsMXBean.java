@@ -0,0 +1,70 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)ServerMetricsMXBean.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+/*
+ * What a server publishes over JMX. Public because the
+ * platform MBean server only introspects public MXBean
+ * interfaces. Times are in milliseconds; the admission
+ * figures are zero, or -1 for permits, for a server
+ * without admission control.
+ */
+public interface ServerMetricsMXBean {
+    long getAcceptedConnections();
+
+    int getActiveConnections();
+
+    int getPeakConnections();
+
+    long getClosedConnections();
+
+    long getBytesRead();
+
+    long getMessagesRead();
+
+    long getCommandsProcessed();
+
+    long getAcceptMillis();
+
+    long getAdmissionWaitMillis();
+
+    long getIdleTimeouts();
+
+    long getReadTimeouts();
+
+    long getAdmittedConnections();
+
+    long getRejectedConnections();
+
+    int getQueuedConnections();
+
+    int getAvailablePermits();
+}
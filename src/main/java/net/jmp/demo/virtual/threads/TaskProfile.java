@@ -0,0 +1,100 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)TaskProfile.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.time.Duration;
+
+import java.util.Locale;
+
+record TaskProfile(int tasks,
+                   Body body,
+                   ThreadKind threadKind,
+                   Duration sleep,
+                   int cpuIterations) {
+    static final String PREFIX = "net.jmp.demo.virtual.threads.tasks.";
+
+    enum Body {
+        PRINT,      // Print the task number, as the original demonstration did
+        CPU,        // Spin on arithmetic for cpuIterations
+        SLEEP,      // Park in Thread.sleep for the sleep duration
+        SOCKET_IO,  // A blocking round trip to a loopback echo socket
+        FILE_IO     // A blocking positional read from a shared temporary file
+    }
+
+    TaskProfile {
+        if (tasks < 1)
+            throw new IllegalArgumentException("Tasks must be positive: " + tasks);
+
+        if (body == null || threadKind == null || sleep == null)
+            throw new IllegalArgumentException("Body, thread kind and sleep are required");
+
+        if (sleep.isNegative())
+            throw new IllegalArgumentException("Sleep must not be negative: " + sleep);
+
+        if (cpuIterations < 0)
+            throw new IllegalArgumentException("CPU iterations must not be negative: " + cpuIterations);
+    }
+
+    // The original demonstration: 10,000 printing tasks, on virtual threads unless the global thread kind says otherwise
+
+    static TaskProfile defaults() {
+        return new TaskProfile(10_000, Body.PRINT, ThreadKind.fromSystemProperty(), Duration.ofMillis(10), 10_000);
+    }
+
+    static TaskProfile of(final @Positive int tasks, final @NotNull Body body, final @NotNull ThreadKind threadKind) {
+        final var defaults = defaults();
+
+        return new TaskProfile(tasks, body, threadKind, defaults.sleep(), defaults.cpuIterations());
+    }
+
+    TaskProfile withTasks(final @Positive int tasks) {
+        return new TaskProfile(tasks, this.body, this.threadKind, this.sleep, this.cpuIterations);
+    }
+
+    TaskProfile withThreadKind(final @NotNull ThreadKind threadKind) {
+        return new TaskProfile(this.tasks, this.body, threadKind, this.sleep, this.cpuIterations);
+    }
+
+    static TaskProfile fromSystemProperties() {
+        final var defaults = defaults();
+
+        return new TaskProfile(
+                Integer.getInteger(PREFIX + "count", defaults.tasks()),
+                Body.valueOf(System.getProperty(PREFIX + "body", defaults.body().name()).trim().toUpperCase(Locale.ROOT)),
+                ThreadKind.fromString(System.getProperty(PREFIX + "kind", defaults.threadKind().name())),
+                Duration.ofMillis(Long.getLong(PREFIX + "sleepMillis", defaults.sleep().toMillis())),
+                Integer.getInteger(PREFIX + "cpuIterations", defaults.cpuIterations())
+        );
+    }
+}
@@ -1,10 +1,11 @@
 package net.jmp.demo.virtual.threads;
 
 /*
+ * (#)Tasks.java    0.5.0   10/18/2026
  * (#)Tasks.java    0.4.0   03/23/2024
  *
  * @author    Jonathan Parker
- * @version   0.4.0
+ * @version   0.5.0
  * @since     0.4.0
  *
  * MIT License
@@ -30,7 +31,33 @@ package net.jmp.demo.virtual.threads;
  * SOFTWARE.
  */
 
-import java.util.concurrent.Executors;
+import jakarta.validation.constraints.NotNull;
+
+import java.io.IOException;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import java.util.Optional;
+
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import java.util.concurrent.locks.LockSupport;
+
+import java.util.function.IntConsumer;
 
 import java.util.stream.IntStream;
 
@@ -39,24 +66,257 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
 
 final class Tasks implements Runnable {
+    private static final int FILE_SIZE = 1_024 * 1_024;
+    private static final int READ_SIZE = 4_096;
+    private static final int SOCKET_TIMEOUT_MILLIS = 10_000;
+
     private final XLogger logger = new XLogger(LoggerFactory.getLogger(this.getClass().getName()));
+    private final TaskProfile profile;
+    private final OutputMode outputMode;
+    private final AtomicInteger liveTasks = new AtomicInteger();
+    private final AtomicInteger peakLiveTasks = new AtomicInteger();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder checksum = new LongAdder();
+    private final LatencyHistogram taskLatency = new LatencyHistogram();
+    private final AtomicReference<Exception> firstFailure = new AtomicReference<>();
+
+    private volatile WorkloadResult result;
 
     Tasks() {
+        this(TaskProfile.defaults(), OutputMode.PRINT_STREAM);
+    }
+
+    Tasks(final @NotNull TaskProfile profile, final @NotNull OutputMode outputMode) {
         super();
+
+        assert profile != null;
+        assert outputMode != null;
+
+        this.profile = profile;
+        this.outputMode = outputMode;
     }
 
     @Override
     public void run() {
         this.logger.entry();
 
-        try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            IntStream.range(0, 10_000).forEach(i -> {
-                executor.submit(() -> System.out.print(String.valueOf(i) + " "));
+        try (final var monitor = new ResourceMonitor()) {
+            final var startNanos = System.nanoTime();
+
+            switch (this.profile.body()) {
+                case PRINT -> this.print();
+                case CPU -> this.submitAll(this::spin);
+                case SLEEP -> this.submitAll(this::sleep);
+                case SOCKET_IO -> this.socketIo();
+                case FILE_IO -> this.fileIo();
+            }
+
+            final var elapsedNanos = System.nanoTime() - startNanos;
+
+            this.result = WorkloadResult.of("tasks", this.profile.tasks(), this.failures.sum(), elapsedNanos, this.taskLatency);
+            this.report(elapsedNanos, monitor);
+        }
+
+        this.logger.exit();
+    }
+
+    // Empty until run() has completed
+
+    Optional<WorkloadResult> getResult() {
+        return Optional.ofNullable(this.result);
+    }
+
+    private void print() {
+        this.logger.entry();
+
+        switch (this.outputMode) {
+            case PRINT_STREAM -> this.submitAll(i -> System.out.print(String.valueOf(i) + " "));
+            case BATCHED -> this.batched();
+        }
+
+        System.out.println();
+
+        this.logger.exit();
+    }
+
+    private void batched() {
+        this.logger.entry();
+
+        final var sink = new BatchedOutputSink();
+
+        try (sink) {
+            this.submitAll(i -> sink.append(i, ' '));
+        }  // Every task has appended before the sink is closed
+
+        this.logger.debug("Wrote {} bytes in {} writes", sink.getBytesWritten(), sink.getWrites());
+
+        this.logger.exit();
+    }
+
+    private void submitAll(final @NotNull IntConsumer task) {
+        this.logger.entry(task);
+
+        assert task != null;
+
+        try (final var executor = this.profile.threadKind().newExecutor()) {
+            IntStream.range(0, this.profile.tasks()).forEach(i -> {
+                executor.submit(() -> {
+                    this.peakLiveTasks.accumulateAndGet(this.liveTasks.incrementAndGet(), Math::max);
+
+                    final var taskStart = System.nanoTime();
+
+                    try {
+                        task.accept(i);
+                    } finally {
+                        this.taskLatency.record(System.nanoTime() - taskStart);
+                        this.liveTasks.decrementAndGet();
+                    }
+                });
             });
         }  // executor.close() is called implicitly, and waits for the threads to complete
 
-        System.out.println();
+        this.logger.exit();
+    }
+
+    private void spin(final int task) {
+        var value = (long) task;
+
+        for (var i = 0; i < this.profile.cpuIterations(); i++)
+            value = value * 6_364_136_223_846_793_005L + 1_442_695_040_888_963_407L;
+
+        this.checksum.add(value);   // Keeps the loop from being optimized away
+    }
+
+    private void sleep(final int task) {
+        try {
+            Thread.sleep(this.profile.sleep());
+        } catch (final InterruptedException ie) {
+            this.fail(ie);
+
+            Thread.currentThread().interrupt(); // Restore the interrupt status
+        }
+    }
+
+    private void socketIo() {
+        this.logger.entry();
+
+        try (final var echo = new LoopbackEcho()) {
+            this.submitAll(task -> {
+                try (final var socket = new Socket()) {
+                    socket.connect(echo.address(), SOCKET_TIMEOUT_MILLIS);
+                    socket.setSoTimeout(SOCKET_TIMEOUT_MILLIS);  // A dropped handshake is a failure, not a hang
+                    socket.getOutputStream().write(task);
+
+                    if (socket.getInputStream().read() == -1)
+                        this.failures.increment();
+                } catch (final IOException ioe) {
+                    this.fail(ioe);
+                }
+            });
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
+        }
+
+        this.logger.exit();
+    }
+
+    private void fileIo() {
+        this.logger.entry();
+
+        try {
+            final var file = Files.createTempFile("tasks-", ".bin");
+
+            try (final var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(FILE_SIZE));
+
+                this.submitAll(task -> {
+                    try {
+                        channel.read(ByteBuffer.allocate(READ_SIZE), (long) task * READ_SIZE % FILE_SIZE);
+                    } catch (final IOException ioe) {
+                        this.fail(ioe);
+                    }
+                });
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (final IOException ioe) {
+            this.logger.catching(ioe);
+        }
+
+        this.logger.exit();
+    }
+
+    private void fail(final @NotNull Exception e) {
+        this.failures.increment();
+
+        if (this.firstFailure.compareAndSet(null, e))
+            this.logger.warn("First task failure: {}", e.toString());
+    }
+
+    private void report(final long elapsedNanos, final @NotNull ResourceMonitor monitor) {
+        this.logger.entry(elapsedNanos, monitor);
+
+        assert monitor != null;
+
+        if (this.logger.isInfoEnabled()) {
+            this.logger.info("{} {} tasks on {} threads ({} output) took {} ms: {} tasks/s, peak live tasks {}, failures {}",
+                    this.profile.tasks(),
+                    this.profile.body(),
+                    this.profile.threadKind(),
+                    this.outputMode,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    String.format("%.0f", this.profile.tasks() / (elapsedNanos / 1e9)),
+                    this.peakLiveTasks.get(),
+                    this.failures.sum());
+            this.logger.info("Task latency: {}", this.taskLatency.summary());
+            this.logger.info("Resources: {}", monitor.summary());
+        }
 
         this.logger.exit();
     }
+
+    // Answers each connection with the byte it sent and closes first so TIME_WAIT lands on this side
+
+    private static final class LoopbackEcho implements AutoCloseable {
+        private static final long ACCEPT_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+        private final ServerSocket serverSocket;
+
+        private LoopbackEcho() throws IOException {
+            this.serverSocket = new ServerSocket(0, Server.BACKLOG, InetAddress.getLoopbackAddress());
+
+            Thread.ofVirtual().name("loopback-echo").start(this::accept);
+        }
+
+        private SocketAddress address() {
+            return this.serverSocket.getLocalSocketAddress();
+        }
+
+        private void accept() {
+            while (!this.serverSocket.isClosed()) {
+                try {
+                    final var socket = this.serverSocket.accept();
+
+                    Thread.ofVirtual().start(() -> {
+                        try (socket) {
+                            final var value = socket.getInputStream().read();
+
+                            if (value != -1)
+                                socket.getOutputStream().write(value);
+                        } catch (final IOException ignored) {
+                            // The task records the failure
+                        }
+                    });
+                } catch (final IOException ioe) {
+                    if (!this.serverSocket.isClosed())
+                        LockSupport.parkNanos(ACCEPT_BACKOFF_NANOS);  // Out of descriptors; let some tasks finish
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.serverSocket.close();
+        }
+    }
 }
@@ -0,0 +1,431 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)ThreadDump.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.io.IOException;
+
+import java.lang.management.ManagementFactory;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A JSON thread dump from HotSpotDiagnosticMXBean, which,
+ * unlike jstack, includes every virtual thread, reduced to
+ * groups of threads sharing a state and a top frame. The
+ * JDK 21 format records neither whether a thread is
+ * virtual nor its state, so both are read off the stack:
+ * a virtual thread's stack bottoms out in VirtualThread.run
+ * and the frames at the top show how it is blocked. A
+ * group's frame is the first one outside java.base, the
+ * application code the threads are in, and it notes the
+ * first frame past the JDK's parking machinery, where
+ * they are blocked; a thousand connections waiting in one
+ * socket read share a group.
+ */
+final class ThreadDump {
+    static final String DIRECTORY_PROPERTY = "net.jmp.demo.virtual.threads.threadDump.directory";
+
+    private static final String JDK_MODULE = "java.base/";
+    private static final String VIRTUAL_THREAD_RUN = "java.base/java.lang.VirtualThread.run(";
+    private static final List<String> PARKING_FRAMES = List.of(
+            "java.base/java.lang.VirtualThread.",
+            "java.base/java.lang.System$2.",
+            "java.base/jdk.internal.misc.",
+            "java.base/java.util.concurrent.locks.LockSupport.",
+            "java.base/sun.nio.ch.Poller."
+    );
+
+    enum State {
+        RUNNING,    // Mounted, or a platform thread, doing work
+        PARKED,     // Waiting in LockSupport.park, which is also how a virtual thread waits for I/O
+        SLEEPING,   // In Thread.sleep
+        WAITING,    // In Object.wait
+        NATIVE,     // A platform thread in native code, such as a blocking accept
+        UNKNOWN     // No Java frames: not yet started or a VM-internal thread
+    }
+
+    record Group(boolean virtual, State state, String frame, String blockedIn, int threads) {
+    }
+
+    private final Path file;
+    private final List<ThreadStack> threads;
+
+    private ThreadDump(final @NotNull Path file, final @NotNull List<ThreadStack> threads) {
+        super();
+
+        this.file = file;
+        this.threads = threads;
+    }
+
+    // Writes the dump to a new file, which is kept for a closer look, and reads it back
+
+    static ThreadDump capture() throws IOException {
+        final var directory = Path.of(System.getProperty(DIRECTORY_PROPERTY, System.getProperty("java.io.tmpdir")));
+        final var file = Files.createTempFile(directory, "threads-", ".json").toAbsolutePath();
+
+        Files.delete(file);     // dumpThreads refuses to overwrite a file
+
+        ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class)
+                .dumpThreads(file.toString(), HotSpotDiagnosticMXBean.ThreadDumpFormat.JSON);
+
+        return read(file);
+    }
+
+    static ThreadDump read(final @NotNull Path file) throws IOException {
+        assert file != null;
+
+        final var json = new JsonParser(Files.readString(file, StandardCharsets.UTF_8)).parse();
+        final var threads = new ArrayList<ThreadStack>();
+
+        for (final var container : list(map(map(json).get("threadDump")).get("threadContainers"))) {
+            for (final var thread : list(map(container).get("threads"))) {
+                final var stack = list(map(thread).get("stack")).stream().map(String.class::cast).toList();
+
+                threads.add(new ThreadStack(stack));
+            }
+        }
+
+        return new ThreadDump(file, threads);
+    }
+
+    Path getFile() {
+        return this.file;
+    }
+
+    long getVirtualThreads() {
+        return this.threads.stream().filter(ThreadStack::isVirtual).count();
+    }
+
+    long getPlatformThreads() {
+        return this.threads.size() - this.getVirtualThreads();
+    }
+
+    // Largest group first
+
+    List<Group> groups() {
+        final Map<GroupKey, Integer> counts = new HashMap<>();
+
+        for (final var thread : this.threads)
+            counts.merge(new GroupKey(thread.isVirtual(), thread.state(), thread.applicationFrame(), thread.blockedIn()), 1, Integer::sum);
+
+        return counts.entrySet().stream()
+                .map(entry -> new Group(entry.getKey().virtual(),
+                        entry.getKey().state(),
+                        entry.getKey().frame(),
+                        entry.getKey().blockedIn(),
+                        entry.getValue()))
+                .sorted(Comparator.comparingInt(Group::threads).reversed().thenComparing(Group::frame))
+                .toList();
+    }
+
+    // One line per group, the largest first, each as: threads, kind, state, frame; then where it is blocked if elsewhere
+
+    String summary(final @Positive int maxGroups) {
+        final var groups = this.groups();
+        final var summary = new StringBuilder(String.format("%d virtual and %d platform threads in %d groups, dumped to %s",
+                this.getVirtualThreads(),
+                this.getPlatformThreads(),
+                groups.size(),
+                this.file));
+
+        for (final var group : groups.subList(0, Math.min(maxGroups, groups.size()))) {
+            summary.append(String.format("%n%7d %-8s %-8s %s",
+                    group.threads(),
+                    group.virtual() ? "virtual" : "platform",
+                    group.state(),
+                    group.frame()));
+
+            if (!group.blockedIn().equals(group.frame()))
+                summary.append(String.format("%n%25s in %s", "", group.blockedIn()));
+        }
+
+        if (groups.size() > maxGroups)
+            summary.append(String.format("%n%d smaller group(s) omitted", groups.size() - maxGroups));
+
+        return summary.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> map(final Object value) throws IOException {
+        if (value instanceof Map<?, ?> map)
+            return (Map<String, Object>) map;
+
+        throw new IOException("Unexpected thread dump layout: expected an object");
+    }
+
+    private static List<Object> list(final Object value) throws IOException {
+        if (value instanceof List<?> list)
+            return List.copyOf(list);
+
+        throw new IOException("Unexpected thread dump layout: expected an array");
+    }
+
+    private record GroupKey(boolean virtual, State state, String frame, String blockedIn) {
+    }
+
+    private record ThreadStack(List<String> frames) {
+        private boolean isVirtual() {
+            return !this.frames.isEmpty() && this.frames.getLast().startsWith(VIRTUAL_THREAD_RUN);
+        }
+
+        private State state() {
+            if (this.frames.isEmpty())
+                return State.UNKNOWN;
+
+            final var top = this.frames.getFirst();
+
+            for (final var frame : this.frames.subList(0, Math.min(4, this.frames.size()))) {
+                if (frame.contains("java.lang.Thread.sleep") || frame.contains("java.lang.VirtualThread.sleepNanos"))
+                    return State.SLEEPING;
+            }
+
+            if (top.contains("java.lang.VirtualThread.park") || top.contains("jdk.internal.misc.Unsafe.park"))
+                return State.PARKED;
+
+            if (top.contains("java.lang.Object.wait"))
+                return State.WAITING;
+
+            if (top.endsWith("(Native Method)"))
+                return State.NATIVE;
+
+            return State.RUNNING;
+        }
+
+        // Threads wholly inside the JDK, such as its own pool workers, fall back to where they are blocked
+
+        private String applicationFrame() {
+            for (final var frame : this.frames) {
+                if (!frame.startsWith(JDK_MODULE))
+                    return frame;
+            }
+
+            return this.blockedIn();
+        }
+
+        private String blockedIn() {
+            for (final var frame : this.frames) {
+                if (PARKING_FRAMES.stream().noneMatch(frame::startsWith))
+                    return frame;
+            }
+
+            return this.frames.isEmpty() ? "(no frames)" : this.frames.getFirst();
+        }
+    }
+
+    // Just enough JSON for the dump: objects, arrays, strings and bare literals, which are kept as text
+
+    private static final class JsonParser {
+        private final String text;
+
+        private int position;
+
+        private JsonParser(final @NotNull String text) {
+            this.text = text;
+        }
+
+        private Object parse() throws IOException {
+            final var value = this.value();
+
+            this.skipWhitespace();
+
+            if (this.position != this.text.length())
+                throw this.error("Trailing characters");
+
+            return value;
+        }
+
+        private Object value() throws IOException {
+            this.skipWhitespace();
+
+            if (this.position >= this.text.length())
+                throw this.error("Unexpected end");
+
+            return switch (this.text.charAt(this.position)) {
+                case '{' -> this.object();
+                case '[' -> this.array();
+                case '"' -> this.string();
+                default -> this.literal();
+            };
+        }
+
+        private Map<String, Object> object() throws IOException {
+            final var object = new LinkedHashMap<String, Object>();
+
+            this.expect('{');
+
+            if (this.peek() == '}') {
+                this.position++;
+
+                return object;
+            }
+
+            do {
+                this.skipWhitespace();
+
+                final var key = this.string();
+
+                this.expect(':');
+
+                object.put(key, this.value());
+            } while (this.next(',', '}') == ',');
+
+            return object;
+        }
+
+        private List<Object> array() throws IOException {
+            final var array = new ArrayList<>();
+
+            this.expect('[');
+
+            if (this.peek() == ']') {
+                this.position++;
+
+                return array;
+            }
+
+            do {
+                array.add(this.value());
+            } while (this.next(',', ']') == ',');
+
+            return array;
+        }
+
+        private String string() throws IOException {
+            this.expect('"');
+
+            final var string = new StringBuilder();
+
+            while (this.position < this.text.length()) {
+                final var c = this.text.charAt(this.position++);
+
+                if (c == '"')
+                    return string.toString();
+
+                if (c != '\\') {
+                    string.append(c);
+
+                    continue;
+                }
+
+                if (this.position >= this.text.length())
+                    break;
+
+                final var escaped = this.text.charAt(this.position++);
+
+                switch (escaped) {
+                    case 'b' -> string.append('\b');
+                    case 'f' -> string.append('\f');
+                    case 'n' -> string.append('\n');
+                    case 'r' -> string.append('\r');
+                    case 't' -> string.append('\t');
+                    case 'u' -> {
+                        if (this.position + 4 > this.text.length())
+                            throw this.error("Truncated escape");
+
+                        string.append((char) Integer.parseInt(this.text, this.position, this.position + 4, 16));
+
+                        this.position += 4;
+                    }
+                    default -> string.append(escaped);     // Quote, backslash and slash stand for themselves
+                }
+            }
+
+            throw this.error("Unterminated string");
+        }
+
+        // Numbers, true, false and null; the dump quotes everything the summary reads
+
+        private Object literal() throws IOException {
+            final var start = this.position;
+
+            while (this.position < this.text.length() && ",}] \t\r\n".indexOf(this.text.charAt(this.position)) < 0)
+                this.position++;
+
+            final var literal = this.text.substring(start, this.position);
+
+            if (literal.isEmpty())
+                throw this.error("Unexpected character");
+
+            return literal.equals("null") ? null : literal;
+        }
+
+        private char peek() throws IOException {
+            this.skipWhitespace();
+
+            if (this.position >= this.text.length())
+                throw this.error("Unexpected end");
+
+            return this.text.charAt(this.position);
+        }
+
+        private void expect(final char expected) throws IOException {
+            if (this.peek() != expected)
+                throw this.error("Expected '" + expected + "'");
+
+            this.position++;
+        }
+
+        private char next(final char separator, final char terminator) throws IOException {
+            final var c = this.peek();
+
+            if (c != separator && c != terminator)
+                throw this.error("Expected '" + separator + "' or '" + terminator + "'");
+
+            this.position++;
+
+            return c;
+        }
+
+        private void skipWhitespace() {
+            while (this.position < this.text.length() && Character.isWhitespace(this.text.charAt(this.position)))
+                this.position++;
+        }
+
+        private IOException error(final @NotNull String message) {
+            return new IOException(message + " at offset " + this.position + " of the thread dump");
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)ThreadKind.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Locale;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Public so the benchmarks can take it as a parameter
+
+public enum ThreadKind {
+    VIRTUAL,    // A new virtual thread per task
+    PLATFORM,   // A new platform thread per task
+    FIXED,      // A fixed pool of platform threads, one per processor
+    FORK_JOIN;  // A work-stealing ForkJoinPool with one worker per processor
+
+    static final String PROPERTY = "net.jmp.demo.virtual.threads.kind";
+
+    static ThreadKind fromSystemProperty() {
+        return fromString(System.getProperty(PROPERTY, VIRTUAL.name()));
+    }
+
+    static ThreadKind fromString(final @NotNull String value) {
+        assert value != null;
+
+        return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+
+    ExecutorService newExecutor() {
+        return switch (this) {
+            case VIRTUAL -> Executors.newVirtualThreadPerTaskExecutor();
+            case PLATFORM -> Executors.newThreadPerTaskExecutor(Thread.ofPlatform().factory());
+            case FIXED -> Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            case FORK_JOIN -> Executors.newWorkStealingPool();
+        };
+    }
+
+    // The pooled kinds have no builder of their own, so their single threads are platform threads
+
+    Thread.Builder newBuilder() {
+        return switch (this) {
+            case VIRTUAL -> Thread.ofVirtual();
+            case PLATFORM, FIXED, FORK_JOIN -> Thread.ofPlatform();
+        };
+    }
+
+    Thread.Builder newBuilder(final @NotNull String prefix) {
+        assert prefix != null;
+
+        return this.newBuilder().name(prefix, 0);
+    }
+}
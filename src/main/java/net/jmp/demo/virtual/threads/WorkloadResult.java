@@ -0,0 +1,111 @@
+package net.jmp.demo.virtual.threads;
+
+/*
+ * (#)WorkloadResult.java 0.5.0   10/18/2026
+ *
+ * @author    Jonathan Parker
+ * @version   0.5.0
+ * @since     0.5.0
+ *
+ * MIT License
+ *
+ * Copyright (c) 2024 Jonathan M. Parker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Properties;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The outcome of one workload run, kept small enough
+ * to pass from a forked JVM back to its parent as a
+ * properties file.
+ */
+record WorkloadResult(String workload,
+                      long operations,
+                      long failures,
+                      long elapsedNanos,
+                      long p50Nanos,
+                      long p99Nanos,
+                      long maxNanos) {
+    WorkloadResult {
+        assert workload != null;
+        assert operations >= 0;
+        assert failures >= 0;
+        assert elapsedNanos >= 0;
+    }
+
+    static WorkloadResult of(final @NotNull String workload,
+                             final long operations,
+                             final long failures,
+                             final long elapsedNanos,
+                             final @NotNull LatencyHistogram latency) {
+        assert latency != null;
+
+        return new WorkloadResult(workload,
+                operations,
+                failures,
+                elapsedNanos,
+                latency.getValueAtPercentile(50),
+                latency.getValueAtPercentile(99),
+                latency.getMax());
+    }
+
+    // A run that failed before it could measure anything
+
+    static WorkloadResult failure(final @NotNull String workload) {
+        return new WorkloadResult(workload, 0, 1, 0, 0, 0, 0);
+    }
+
+    double throughput() {
+        return this.elapsedNanos == 0 ? 0 : this.operations / (this.elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    Properties toProperties() {
+        final var properties = new Properties();
+
+        properties.setProperty("workload", this.workload);
+        properties.setProperty("operations", Long.toString(this.operations));
+        properties.setProperty("failures", Long.toString(this.failures));
+        properties.setProperty("elapsedNanos", Long.toString(this.elapsedNanos));
+        properties.setProperty("p50Nanos", Long.toString(this.p50Nanos));
+        properties.setProperty("p99Nanos", Long.toString(this.p99Nanos));
+        properties.setProperty("maxNanos", Long.toString(this.maxNanos));
+
+        return properties;
+    }
+
+    static WorkloadResult fromProperties(final @NotNull Properties properties) {
+        assert properties != null;
+
+        return new WorkloadResult(
+                properties.getProperty("workload"),
+                Long.parseLong(properties.getProperty("operations")),
+                Long.parseLong(properties.getProperty("failures")),
+                Long.parseLong(properties.getProperty("elapsedNanos")),
+                Long.parseLong(properties.getProperty("p50Nanos")),
+                Long.parseLong(properties.getProperty("p99Nanos")),
+                Long.parseLong(properties.getProperty("maxNanos"))
+        );
+    }
+}